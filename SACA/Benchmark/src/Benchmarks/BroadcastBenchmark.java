@@ -0,0 +1,146 @@
+package Benchmarks;
+
+import Entities.Airplane;
+import Entities.TrafficUpdate;
+import Net.Message;
+import Net.SharedBuffer;
+import Net.TcpConnection;
+import Traffic.DeltaTracker;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One airplane list broadcast to the consoles, as the controller does every tick: encoded for each console,
+ * as it used to be, or once into a shared buffer. The consoles are sinks writing nothing, so the results are
+ * the encoding cost and the allocation per tick.
+ * The delta benchmarks send what changed since the previous tick, with a tenth of the airplanes moving every tick.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BroadcastBenchmark {
+
+    private static final long SEED = 103;
+
+    @Param({"100", "1000"})
+    public int fleetSize;
+
+    @Param({"1", "10", "50"})
+    public int consoles;
+
+    private List<Airplane> m_Airplanes;
+    private List<Sink> m_Consoles;
+    private SharedBuffer.Pool m_Pool;
+    private DeltaTracker m_Deltas;
+    private int m_Tick;
+
+    @Setup
+    public void setUp() {
+        m_Airplanes = new TrafficGenerator(SEED).generate(fleetSize);
+        m_Consoles = new ArrayList<>(consoles);
+        m_Pool = new SharedBuffer.Pool();
+
+        for (int i = 0; i < consoles; i++)
+            m_Consoles.add(new Sink());
+
+        m_Deltas = new DeltaTracker();
+        m_Deltas.update(m_Airplanes);
+        m_Tick = 0;
+    }
+
+    private void moveTenth() {
+        final int count = m_Airplanes.size() / 10;
+        final int first = (m_Tick++ % 10) * count;
+
+        // one second at 200 km/h and more, beyond the tolerance of the tracker
+        for (int i = first; i < first + count; i++)
+            m_Airplanes.get(i).update(1000);
+
+        m_Deltas.update(m_Airplanes);
+    }
+
+    @Benchmark
+    public void textPerConsole(Blackhole blackhole) {
+        final StringBuilder sb = new StringBuilder();
+        m_Airplanes.forEach(sb::append);
+
+        final Message message = new Message(Message.HINT_AIRPLANE_LIST, sb.toString());
+        for (Sink console : m_Consoles) {
+            // formatted, then encoded by the connection, for every console
+            blackhole.consume(console.encode(message.toString()));
+        }
+    }
+
+    @Benchmark
+    public void textShared() {
+        final StringBuilder sb = new StringBuilder();
+        m_Airplanes.forEach(sb::append);
+
+        final Message message = new Message(Message.HINT_AIRPLANE_LIST, sb.toString());
+        final SharedBuffer line = TcpConnection.encodeLine(message.toString(), m_Pool);
+
+        for (Sink console : m_Consoles)
+            console.send(line);
+
+        line.release();
+    }
+
+    @Benchmark
+    public void binaryShared() {
+        final SharedBuffer frame = Airplane.toListFrame(m_Airplanes, m_Pool);
+
+        for (Sink console : m_Consoles)
+            console.send(frame);
+
+        frame.release();
+    }
+
+    @Benchmark
+    public void textDelta() {
+        moveTenth();
+
+        final Message message = TrafficUpdate.toDeltaMessage(m_Deltas.getSequence(), m_Deltas.getRemoved(), m_Deltas.getChanged());
+        final SharedBuffer line = TcpConnection.encodeLine(message.toString(), m_Pool);
+
+        for (Sink console : m_Consoles)
+            console.send(line);
+
+        line.release();
+    }
+
+    @Benchmark
+    public void binaryDelta() {
+        moveTenth();
+
+        final SharedBuffer frame = TrafficUpdate.toDeltaFrame(m_Deltas.getSequence(), m_Deltas.getRemoved(), m_Deltas.getChanged(), m_Pool);
+
+        for (Sink console : m_Consoles)
+            console.send(frame);
+
+        frame.release();
+    }
+
+    /**
+     * Connection writing its messages nowhere, at once.
+     */
+    private static class Sink extends TcpConnection {
+
+        private byte[] encode(String message) {
+            return message.getBytes(LINE_CHARSET);
+        }
+
+        @Override
+        public void send(SharedBuffer buffer) {
+            buffer.retain().release();
+        }
+
+    }
+
+}
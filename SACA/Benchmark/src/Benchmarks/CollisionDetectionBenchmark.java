@@ -0,0 +1,85 @@
+package Benchmarks;
+
+import Collision.CollisionDetection;
+import Entities.Airplane;
+import FMath.Vector3;
+import Traffic.TrafficStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One controller tick: a share of the fleet moves by one second, then the collision detection is updated.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CollisionDetectionBenchmark {
+
+    private static final long SEED = 103;
+
+    @Param({"1000", "10000", "50000"})
+    public int fleetSize;
+
+    @Param({"0.01"})
+    public float movingRatio;
+
+    @Param({"full", "incremental"})
+    public String mode;
+
+    @Param({"grid", "sweep"})
+    public String broadPhase;
+
+    @Param({"scalar", "batch"})
+    public String kernel;
+
+    private List<Airplane> m_Airplanes;
+    private TrafficStore m_Traffic;
+    private CollisionDetection m_CollDetect;
+
+    private final Vector3 m_Position = new Vector3();
+    private int m_Next;
+    private int m_Moving;
+
+    @Setup
+    public void setUp() {
+        m_Airplanes = new TrafficGenerator(SEED).generate(fleetSize);
+        m_Traffic = TrafficGenerator.toStore(m_Airplanes);
+
+        m_CollDetect = new CollisionDetection(m_Traffic);
+        m_CollDetect.setIncremental(mode.equals("incremental"));
+        m_CollDetect.setBroadPhase(broadPhase.equals("sweep") ? CollisionDetection.BROAD_PHASE_SWEEP : CollisionDetection.BROAD_PHASE_GRID);
+        m_CollDetect.setKernel(kernel.equals("batch") ? CollisionDetection.KERNEL_BATCH : CollisionDetection.KERNEL_SCALAR);
+        m_CollDetect.update();
+
+        m_Next = 0;
+        m_Moving = Math.max(1, (int) (fleetSize * movingRatio));
+    }
+
+    @Benchmark
+    public void tick() {
+        // move the next airplanes in turn, reading the state from the store so the move does not allocate
+        for (int i = 0; i < m_Moving; i++) {
+            final Airplane airplane = m_Airplanes.get(m_Next);
+            final int slot = m_Traffic.getSlot(airplane.getId());
+            final float step = m_Traffic.Speed[slot] / 3600; // km flown in one second
+
+            m_Position.set(
+                    m_Traffic.PosX[slot] + m_Traffic.DirX[slot] * step,
+                    m_Traffic.PosY[slot] + m_Traffic.DirY[slot] * step,
+                    m_Traffic.PosZ[slot] + m_Traffic.DirZ[slot] * step);
+
+            airplane.setPosition(m_Position);
+            m_Traffic.put(airplane);
+
+            m_Next = (m_Next + 1) % fleetSize;
+        }
+
+        m_CollDetect.update();
+    }
+
+}
@@ -0,0 +1,205 @@
+package Benchmarks;
+
+import Net.ConnectionThreads;
+import Net.NioReactor;
+import Net.TcpConnection;
+import Net.TcpListener;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Opens idle and active connections to an echoing listener in this process, then reports the memory and threads
+ * they hold and the round trip latency of the active ones. Not a JMH benchmark, as a fork could not hold that many sockets.
+ * <p>
+ * Usage: {@code ConnectionBenchmark [platform|virtual|nio] [idle] [active] [seconds]}, by default
+ * {@code platform 10000 1000 10}. The nio mode serves the listener with a reactor, the clients remain platform threads.
+ */
+public class ConnectionBenchmark {
+
+    private static final int PORT = 15600;
+    private static final int TIMEOUT = 60000;
+    private static final int SEND_INTERVAL = 100; // ms, per active connection
+    private static final String ECHO = "echo ";
+
+    public static void main(String[] args) throws Exception {
+        final String mode = args.length > 0 ? args[0] : "platform";
+        final int idle = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+        final int active = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        final int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+
+        if (mode.equals("virtual") && !ConnectionThreads.setMode(ConnectionThreads.MODE_VIRTUAL)) {
+            System.err.println("virtual threads are not supported by this runtime");
+            System.exit(1);
+        }
+
+        final NioReactor reactor = mode.equals("nio") ? new NioReactor(2) : null;
+        if (reactor != null)
+            reactor.start();
+
+        final Echo listener = new Echo(reactor);
+        listener.startListening();
+
+        final Sample baseline = Sample.take();
+
+        // idle connections only ping
+        final List<TcpConnection> connections = new ArrayList<>(idle + active);
+        final long connectStart = System.nanoTime();
+        try {
+            for (int i = 0; i < idle + active; i++)
+                connections.add(new TcpConnection("localhost", PORT, TIMEOUT));
+        }
+        catch (IOException | OutOfMemoryError e) {
+            System.err.println("stopped at " + connections.size() + " connections: " + e);
+        }
+        final long connectTime = System.nanoTime() - connectStart;
+
+        final Sample loaded = Sample.take();
+
+        // active connections send timestamps that come back echoed
+        final List<TcpConnection> actives = connections.subList(Math.max(connections.size() - active, 0), connections.size());
+        final Latencies latencies = new Latencies(actives.size() * seconds * (1000 / SEND_INTERVAL) + 1);
+
+        for (TcpConnection connection : actives)
+            connection.addEventHandler(latencies);
+
+        final long end = System.currentTimeMillis() + seconds * 1000L;
+        while (System.currentTimeMillis() < end) {
+            final long tickStart = System.currentTimeMillis();
+
+            for (TcpConnection connection : actives)
+                connection.send(ECHO + System.nanoTime());
+
+            Thread.sleep(Math.max(SEND_INTERVAL - (System.currentTimeMillis() - tickStart), 1));
+        }
+
+        Thread.sleep(1000);
+
+        System.out.println("mode           " + mode);
+        System.out.println("connections    " + connections.size() + " (" + actives.size() + " active), opened in " + connectTime / 1000000 + " ms");
+        System.out.println("threads        " + loaded.Threads + " (" + baseline.Threads + " before)");
+        System.out.println("heap           " + mb(loaded.Heap) + " MB (" + mb(baseline.Heap) + " MB before)");
+        System.out.println("resident       " + mb(loaded.Resident) + " MB (" + mb(baseline.Resident) + " MB before)");
+        System.out.println("per connection " + (loaded.Resident - baseline.Resident) / Math.max(connections.size(), 1) / 1024 + " KB resident");
+        latencies.print();
+
+        for (TcpConnection connection : connections)
+            connection.close();
+
+        listener.stopListening();
+        if (reactor != null)
+            reactor.stop();
+
+        System.exit(0);
+    }
+
+    private static long mb(long bytes) {
+        return bytes / (1024 * 1024);
+    }
+
+    private static class Echo extends TcpListener {
+
+        private Echo(NioReactor reactor) throws IOException {
+            super(PORT, TIMEOUT, reactor);
+        }
+
+        @Override
+        public void onReceiveNewConnection(TcpConnection connection) {
+        }
+
+        @Override
+        public void onReceiveMessage(TcpConnection connection, String message) {
+            connection.send(message);
+        }
+
+        @Override
+        public void onCloseConnection(TcpConnection connection) {
+        }
+
+    }
+
+    private static class Latencies implements TcpConnection.EventHandler {
+
+        private final long[] m_Values;
+        private final AtomicInteger m_Count;
+
+        private Latencies(int capacity) {
+            m_Values = new long[capacity];
+            m_Count = new AtomicInteger(0);
+        }
+
+        @Override
+        public void onReceiveMessage(TcpConnection connection, String message) {
+            if (!message.startsWith(ECHO))
+                return;
+
+            final long latency = System.nanoTime() - Long.parseLong(message.substring(ECHO.length()));
+            final int index = m_Count.getAndIncrement();
+            if (index < m_Values.length)
+                m_Values[index] = latency;
+        }
+
+        @Override
+        public void onCloseConnection(TcpConnection connection) {
+        }
+
+        private void print() {
+            final int count = Math.min(m_Count.get(), m_Values.length);
+            if (count == 0) {
+                System.out.println("latency        no echo received");
+                return;
+            }
+
+            final long[] values = Arrays.copyOf(m_Values, count);
+            Arrays.sort(values);
+
+            System.out.printf("latency        p50 %.2f ms, p99 %.2f ms, max %.2f ms over %d messages%n",
+                    values[count / 2] / 1e6, values[(int) (count * 0.99)] / 1e6, values[count - 1] / 1e6, count);
+        }
+
+    }
+
+    /**
+     * Live threads, heap in use after a collection and resident memory of the process.
+     */
+    private static class Sample {
+
+        public long Heap;
+        public long Resident;
+        public int Threads;
+
+        private static Sample take() {
+            final Runtime runtime = Runtime.getRuntime();
+            runtime.gc();
+
+            final Sample sample = new Sample();
+            sample.Heap = runtime.totalMemory() - runtime.freeMemory();
+            sample.Resident = readResident();
+            sample.Threads = Thread.activeCount();
+            return sample;
+        }
+
+        // linux only, 0 elsewhere
+        private static long readResident() {
+            try (BufferedReader reader = new BufferedReader(new FileReader("/proc/self/status"))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith("VmRSS:"))
+                        return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+                }
+            }
+            catch (IOException | NumberFormatException e) {
+                // do nothing
+            }
+
+            return 0;
+        }
+
+    }
+
+}
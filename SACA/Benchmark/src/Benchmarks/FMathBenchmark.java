@@ -0,0 +1,95 @@
+package Benchmarks;
+
+import FMath.Ray;
+import FMath.Rotator;
+import FMath.Vector3;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FMath operations on seeded random operands, cycling through a small table so the results are not constant.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FMathBenchmark {
+
+    private static final long SEED = 103;
+    private static final int OPERANDS = 1024; // power of 2
+
+    private Vector3[] m_Vectors;
+    private Rotator[] m_Rotators;
+    private Ray[] m_Rays;
+    private int m_Index;
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(SEED);
+
+        m_Vectors = new Vector3[OPERANDS];
+        m_Rotators = new Rotator[OPERANDS];
+        m_Rays = new Ray[OPERANDS];
+
+        for (int i = 0; i < OPERANDS; i++) {
+            m_Vectors[i] = new Vector3(random.nextFloat() * 100, random.nextFloat() * 100, random.nextFloat() * 10);
+            m_Rotators[i] = new Rotator(random.nextFloat() * 80, random.nextFloat() * 20, random.nextFloat() * 360);
+            m_Rays[i] = new Ray(
+                    new Vector3(random.nextFloat() * 100, random.nextFloat() * 100, random.nextFloat() * 10),
+                    m_Rotators[i].getRotated(new Vector3(1.0f, 0.0f, 0.0f)).getNormalized());
+        }
+
+        m_Index = 0;
+    }
+
+    private int next() {
+        m_Index = (m_Index + 1) & (OPERANDS - 1);
+        return m_Index;
+    }
+
+    @Benchmark
+    public Vector3 vector3Add() {
+        final int i = next();
+        return Vector3.add(m_Vectors[i], m_Vectors[(i + 1) & (OPERANDS - 1)]);
+    }
+
+    @Benchmark
+    public float vector3Dot() {
+        final int i = next();
+        return Vector3.dot(m_Vectors[i], m_Vectors[(i + 1) & (OPERANDS - 1)]);
+    }
+
+    @Benchmark
+    public float vector3Distance() {
+        final int i = next();
+        return Vector3.distance(m_Vectors[i], m_Vectors[(i + 1) & (OPERANDS - 1)]);
+    }
+
+    @Benchmark
+    public float vector3XyDistance() {
+        final int i = next();
+        return Vector3.xyDistance(m_Vectors[i], m_Vectors[(i + 1) & (OPERANDS - 1)]);
+    }
+
+    @Benchmark
+    public Vector3 vector3Normalized() {
+        return m_Vectors[next()].getNormalized();
+    }
+
+    @Benchmark
+    public Vector3 rotatorGetRotated() {
+        final int i = next();
+        return m_Rotators[i].getRotated(m_Vectors[i]);
+    }
+
+    @Benchmark
+    public Vector3 rayNearestPointToRay() {
+        final int i = next();
+        return m_Rays[i].nearestPointToRay(m_Rays[(i + 1) & (OPERANDS - 1)]);
+    }
+
+}
@@ -0,0 +1,138 @@
+package Benchmarks;
+
+import Entities.Airplane;
+import Entities.IAirplane;
+import Net.Message;
+import Net.Protocol;
+import Net.SharedBuffer;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding of the position reports and of the airplane list broadcast, with the text and binary protocols.
+ * Decoding a report applies it to a tracked airplane, as the controller does.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ProtocolBenchmark {
+
+    private static final long SEED = 103;
+    private static final int REPORTS = 1024; // power of 2
+
+    @Param({"100"})
+    public int listSize;
+
+    private List<Airplane> m_Airplanes;
+    private String[] m_TextReports;
+    private ByteBuffer[] m_BinaryReports;
+    private IAirplane m_Tracked;
+    private int m_Index;
+    private SharedBuffer.Pool m_Pool;
+
+    private String m_TextList;
+    private ByteBuffer m_BinaryList;
+
+    @Setup
+    public void setUp() {
+        m_Airplanes = new TrafficGenerator(SEED).generate(Math.max(REPORTS, listSize));
+
+        // the text pattern takes no negative angle
+        m_Airplanes.forEach(airplane -> airplane.setPitch(Math.abs(airplane.getPitch())));
+
+        m_TextReports = new String[REPORTS];
+        m_BinaryReports = new ByteBuffer[REPORTS];
+
+        for (int i = 0; i < REPORTS; i++) {
+            m_TextReports[i] = m_Airplanes.get(i).toString();
+            m_BinaryReports[i] = m_Airplanes.get(i).toFrame();
+        }
+
+        m_Tracked = new Airplane("AP-00000");
+        m_Index = 0;
+        m_Pool = new SharedBuffer.Pool();
+
+        final List<Airplane> list = m_Airplanes.subList(0, listSize);
+        final StringBuilder sb = new StringBuilder();
+        list.forEach(sb::append);
+
+        m_TextList = new Message(Message.HINT_AIRPLANE_LIST, sb.toString()).toString();
+        m_BinaryList = Airplane.toListFrame(list);
+    }
+
+    private int next() {
+        m_Index = (m_Index + 1) & (REPORTS - 1);
+        return m_Index;
+    }
+
+    @Benchmark
+    public byte[] textEncodeReport() {
+        return m_Airplanes.get(next()).toString().getBytes();
+    }
+
+    @Benchmark
+    public ByteBuffer binaryEncodeReport() {
+        return m_Airplanes.get(next()).toFrame();
+    }
+
+    @Benchmark
+    public int binaryEncodeReportPooled() {
+        // released once written, as the pilot does
+        final SharedBuffer frame = m_Airplanes.get(next()).toFrame(m_Pool);
+        final int size = frame.getBuffer().remaining();
+        frame.release();
+        return size;
+    }
+
+    @Benchmark
+    public IAirplane textDecodeReport() {
+        final IAirplane report = Airplane.fromString(m_TextReports[next()]);
+        return m_Tracked
+                .setPosition(report.getPosition())
+                .setRoll(report.getRoll())
+                .setPitch(report.getPitch())
+                .setYaw(report.getYaw())
+                .setSpeed(report.getSpeed());
+    }
+
+    @Benchmark
+    public IAirplane binaryDecodeReport() {
+        final ByteBuffer payload = m_BinaryReports[next()].duplicate();
+        payload.position(Protocol.HEADER_SIZE);
+
+        Airplane.readId(payload);
+        Airplane.readState(payload, m_Tracked);
+        return m_Tracked;
+    }
+
+    @Benchmark
+    public String textEncodeList() {
+        final StringBuilder sb = new StringBuilder();
+        m_Airplanes.subList(0, listSize).forEach(sb::append);
+        return new Message(Message.HINT_AIRPLANE_LIST, sb.toString()).toString();
+    }
+
+    @Benchmark
+    public ByteBuffer binaryEncodeList() {
+        return Airplane.toListFrame(m_Airplanes.subList(0, listSize));
+    }
+
+    @Benchmark
+    public List<Airplane> textDecodeList() {
+        return Airplane.fromStringMultiple(Message.fromString(m_TextList).Data);
+    }
+
+    @Benchmark
+    public List<Airplane> binaryDecodeList() {
+        final ByteBuffer payload = m_BinaryList.duplicate();
+        payload.position(Protocol.HEADER_SIZE);
+        return Airplane.fromListFrame(payload);
+    }
+
+}
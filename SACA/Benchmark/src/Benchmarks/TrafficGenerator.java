@@ -0,0 +1,80 @@
+package Benchmarks;
+
+import Entities.Airplane;
+import Entities.IAirplane;
+import FMath.Vector3;
+import Traffic.TrafficStore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Seeded synthetic traffic: airplanes spread over a square area at a constant density,
+ * cruising on a few flight levels with random headings and speeds, some of them climbing or descending.
+ */
+public class TrafficGenerator {
+
+    private static final float AREA_PER_AIRPLANE = 16.0f;   // square km (4 km average spacing)
+    private static final float BASE_ALTITUDE     = 3.048f;  // km (equiv to 10000 feet)
+    private static final float LEVEL_SPACING     = 0.3048f; // km (equiv to 1000 feet)
+    private static final float LEVEL_DEVIATION   = 0.03f;   // km
+    private static final float MIN_SPEED         = 200.0f;  // km/h
+    private static final float MAX_SPEED         = 900.0f;  // km/h
+    private static final float CLIMBING_RATIO    = 0.1f;
+    private static final float MAX_CLIMB_PITCH   = 5.0f;    // degrees
+
+    private final Random m_Random;
+    private int m_Levels;
+
+    public TrafficGenerator(long seed) {
+        m_Random = new Random(seed);
+        m_Levels = 6;
+    }
+
+    public TrafficGenerator setLevels(int levels) {
+        m_Levels = Math.max(levels, 1);
+        return this;
+    }
+
+    /**
+     * Side in km of the square area holding the given number of airplanes.
+     */
+    public static float getAreaSize(int count) {
+        return (float) Math.sqrt(count * AREA_PER_AIRPLANE);
+    }
+
+    public List<Airplane> generate(int count) {
+        final float size = getAreaSize(count);
+        final List<Airplane> airplanes = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            final float altitude = BASE_ALTITUDE + m_Random.nextInt(m_Levels) * LEVEL_SPACING
+                    + (m_Random.nextFloat() * 2 - 1) * LEVEL_DEVIATION;
+
+            final float pitch = m_Random.nextFloat() < CLIMBING_RATIO
+                    ? (m_Random.nextFloat() * 2 - 1) * MAX_CLIMB_PITCH
+                    : 0.0f;
+
+            final Airplane airplane = new Airplane(String.format("AP-%05d", i));
+            airplane.setPosition(new Vector3(m_Random.nextFloat() * size, m_Random.nextFloat() * size, altitude))
+                    .setPitch(pitch)
+                    .setYaw(m_Random.nextFloat() * 360)
+                    .setSpeed(MIN_SPEED + m_Random.nextFloat() * (MAX_SPEED - MIN_SPEED));
+
+            airplanes.add(airplane);
+        }
+
+        return airplanes;
+    }
+
+    public static TrafficStore toStore(List<? extends IAirplane> airplanes) {
+        final TrafficStore traffic = new TrafficStore();
+
+        for (IAirplane airplane : airplanes)
+            traffic.put(airplane);
+
+        return traffic;
+    }
+
+}
@@ -0,0 +1,102 @@
+package Checks;
+
+import Benchmarks.TrafficGenerator;
+import Collision.CollisionDetection;
+import Entities.Airplane;
+import FMath.Vector3;
+import Traffic.TrafficStore;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs the collision detection with a time budget on seeded traffic, every airplane moving between updates as at the
+ * controller rate, and checks that each update takes about the budget: after the first updates, which collect the
+ * whole fleet as newcomers and run until {@code update()} is compiled, the median and the ninth decile of the wall
+ * times of {@code update()} are compared to the budget, and printed next to those of a full update. Single updates
+ * may still be paused by the JVM or the system.
+ * <p>
+ * Usage: {@code BudgetCheck [airplanes [budget]]}, by default 10000 airplanes and 5 ms; exits with 1 on failure.
+ */
+public class BudgetCheck {
+
+    private static final long SEED = 7;
+    private static final int UPDATES = 1000;
+    private static final int WARMUP = 700;    // updates left out of the measures, past the compilation of update()
+    private static final long TICK = 250;     // ms of flight between two updates
+    private static final double MEDIAN_MARGIN = 1.2; // times the budget allowed to the median update
+    private static final double DECILE_MARGIN = 1.5; // times the budget allowed to the slowest decile
+
+    public static void main(String[] args) {
+        final int count = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        final int budget = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        final long[] full = measure(count, 0);
+        final long[] scheduled = measure(count, budget);
+
+        System.out.println("full update:      " + describe(full));
+        System.out.println("budget of " + budget + " ms: " + describe(scheduled));
+
+        final double median = scheduled[scheduled.length / 2] / 1e6;
+        final double decile = scheduled[scheduled.length * 9 / 10] / 1e6;
+        if (median > budget * MEDIAN_MARGIN || decile > budget * DECILE_MARGIN) {
+            System.out.println("FAILED updates took " + median + " ms (median), " + decile + " ms (ninth decile) for a budget of " +
+                    budget + " ms");
+            System.exit(1);
+        }
+
+        System.out.println("BudgetCheck passed");
+        System.exit(0);
+    }
+
+    /**
+     * Wall times in nanoseconds of the updates after the warmup, sorted.
+     */
+    private static long[] measure(int count, int budget) {
+        final List<Airplane> airplanes = new TrafficGenerator(SEED).generate(count);
+        final TrafficStore traffic = TrafficGenerator.toStore(airplanes);
+
+        final CollisionDetection collDetect = new CollisionDetection(traffic);
+        collDetect.setTimeBudget(budget);
+
+        final long[] times = new long[UPDATES - WARMUP];
+        long pending = 0;
+        long staleness = 0;
+
+        for (int update = 0; update < UPDATES; update++) {
+            move(airplanes, traffic);
+
+            final long start = System.nanoTime();
+            collDetect.update();
+            final long time = System.nanoTime() - start;
+
+            if (update >= WARMUP) {
+                times[update - WARMUP] = time;
+                pending = Math.max(pending, collDetect.getPendingPairs());
+                staleness = Math.max(staleness, collDetect.getMaxStaleness());
+            }
+        }
+
+        if (budget > 0)
+            System.out.println("budget of " + budget + " ms: up to " + pending + " pairs pending, " + staleness + " ms stale");
+
+        Arrays.sort(times);
+        return times;
+    }
+
+    private static void move(List<Airplane> airplanes, TrafficStore traffic) {
+        final Vector3 position = new Vector3();
+
+        for (Airplane airplane : airplanes) {
+            Airplane.extrapolate(airplane.getPosition(), airplane.getDirection(), airplane.getSpeed(), TICK, position);
+            airplane.setPosition(position);
+            traffic.put(airplane);
+        }
+    }
+
+    private static String describe(long[] times) {
+        return "median " + times[times.length / 2] / 1e6 + " ms, ninth decile " + times[times.length * 9 / 10] / 1e6 +
+                " ms, slowest " + times[times.length - 1] / 1e6 + " ms";
+    }
+
+}
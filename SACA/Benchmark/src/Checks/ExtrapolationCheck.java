@@ -0,0 +1,115 @@
+package Checks;
+
+import Benchmarks.TrafficGenerator;
+import Constants.Integers;
+import Entities.Airplane;
+import Entities.IAirplane;
+import FMath.Vector3;
+import Traffic.Extrapolator;
+import Traffic.TrafficSnapshot;
+import Traffic.TrafficStore;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Feeds the reports of seeded cruise traffic through the extrapolator into the traffic store at the controller rate,
+ * as the pilots send them: every {@link Integers#REPORT_MAX_INTERVAL} ms while flying straight, and at once for the
+ * few airplanes turning. Checks that after the first tick, which adds every airplane, the dirty slots of each tick
+ * are those of the airplanes that turned since the previous one, give or take a tenth of a percent of the fleet.
+ * <p>
+ * Usage: {@code ExtrapolationCheck [airplanes]}, by default 10000; exits with 1 on failure.
+ */
+public class ExtrapolationCheck {
+
+    private static final long SEED = 11;
+    private static final int TICKS = 240;
+    private static final long TICK = 250;         // ms
+    private static final int TURNING_INTERVAL = 100; // one airplane in so many turns once
+    private static final float TURN = 30.0f;      // degrees
+
+    public static void main(String[] args) {
+        final int count = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        final List<Airplane> pilots = new TrafficGenerator(SEED).generate(count);
+
+        // straight paths flown by the pilots, from their last turn
+        final Vector3[] origins = new Vector3[count];
+        final long[] originTimes = new long[count];
+        final long[] reportTimes = new long[count];
+        for (int i = 0; i < count; i++) {
+            origins[i] = new Vector3().set(pilots.get(i).getPosition());
+            reportTimes[i] = -Integers.REPORT_MAX_INTERVAL;
+        }
+
+        final Extrapolator extrapolator = new Extrapolator();
+        final Map<String, IAirplane> airplanes = new HashMap<>();
+        final TrafficStore traffic = new TrafficStore();
+        final Vector3 position = new Vector3();
+
+        int maxUnexpected = 0;
+        long dirtyTotal = 0;
+        final long[] times = new long[TICKS];
+
+        for (int tick = 0; tick < TICKS; tick++) {
+            final long now = tick * TICK;
+            int turned = 0;
+
+            for (int i = 0; i < count; i++) {
+                final Airplane pilot = pilots.get(i);
+
+                Airplane.extrapolate(origins[i], pilot.getDirection(), pilot.getSpeed(), now - originTimes[i], position);
+
+                if (i % TURNING_INTERVAL == 0 && tick == 1 + i / TURNING_INTERVAL % (TICKS - 1)) {
+                    origins[i].set(position);
+                    originTimes[i] = now;
+                    pilot.setYaw(pilot.getYaw() + TURN);
+                    reportTimes[i] = -Integers.REPORT_MAX_INTERVAL; // reports at once
+                    turned++;
+                }
+
+                if (now - reportTimes[i] >= Integers.REPORT_MAX_INTERVAL) {
+                    extrapolator.report(pilot.getId(), new TrafficSnapshot.Report(position.X, position.Y, position.Z,
+                            pilot.getRoll(), pilot.getPitch(), pilot.getYaw(), pilot.getSpeed(), now));
+                    reportTimes[i] = now;
+                }
+            }
+
+            final TrafficSnapshot snapshot = extrapolator.capture(now);
+
+            final long start = System.nanoTime();
+            extrapolator.update(snapshot, airplanes, traffic);
+            times[tick] = System.nanoTime() - start;
+
+            final int dirty = traffic.getDirtyCount();
+            traffic.clearDirty();
+
+            if (tick == 0) {
+                if (dirty != count)
+                    fail(dirty + " slots dirty on the first tick for " + count + " airplanes");
+
+                continue;
+            }
+
+            dirtyTotal += dirty;
+            maxUnexpected = Math.max(maxUnexpected, Math.abs(dirty - turned));
+        }
+
+        Arrays.sort(times);
+        System.out.println(count + " airplanes: " + (double) dirtyTotal / (TICKS - 1) + " slots dirty per tick, up to " +
+                maxUnexpected + " not turning, median extrapolator update " + times[TICKS / 2] / 1e6 + " ms");
+
+        if (maxUnexpected > count / 1000)
+            fail(maxUnexpected + " slots dirty on one tick without their airplane turning");
+
+        System.out.println("ExtrapolationCheck passed");
+        System.exit(0);
+    }
+
+    private static void fail(String message) {
+        System.out.println("FAILED " + message);
+        System.exit(1);
+    }
+
+}
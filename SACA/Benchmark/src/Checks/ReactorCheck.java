@@ -0,0 +1,170 @@
+package Checks;
+
+import Net.Message;
+import Net.NioReactor;
+import Net.Protocol;
+import Net.TcpConnection;
+import Net.TcpListener;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Sends a malformed message line and a truncated message frame to a listener served by a single I/O thread, which
+ * decodes them as the controller does for its consoles, then checks that only the offending connections were closed:
+ * the one opened before keeps being answered, and new connections are still accepted.
+ * <p>
+ * Usage: {@code ReactorCheck}; exits with 1 on the first failure.
+ */
+public class ReactorCheck {
+
+    private static final int PORT = 15610;
+    private static final int TIMEOUT = 60000;
+    private static final int READ_TIMEOUT = 5000;
+
+    public static void main(String[] args) throws Exception {
+        // one I/O thread, holding the accepting key as well as every connection
+        final NioReactor reactor = new NioReactor(1);
+        reactor.start();
+
+        final Decoder listener = new Decoder(reactor);
+        listener.startListening();
+
+        try {
+            final Socket before = connect();
+            check(echoes(before, "before"), "connection opened first served");
+
+            final Socket line = connect();
+            send(line, "msg::<1;!!!;;>\n");
+            check(isClosed(line), "connection sending a malformed line closed");
+
+            final Socket frame = connect();
+            send(frame, "proto::<1>\n");
+            check(readLine(frame).equals("proto::<1>"), "binary protocol answered");
+            send(frame, "proto::<1>\n"); // confirmed, frames from here on
+
+            // a message frame whose first string claims more bytes than the frame holds
+            final ByteBuffer truncated = Protocol.allocate(Protocol.FRAME_MESSAGE, 8);
+            truncated.putInt(Message.HINT_COMMAND).putInt(100).flip();
+            send(frame, truncated);
+            check(isClosed(frame), "connection sending a truncated frame closed");
+
+            check(echoes(before, "after"), "connection opened first still served");
+
+            final Socket after = connect();
+            check(echoes(after, "new"), "new connection accepted and served");
+
+            before.close();
+            after.close();
+        }
+        finally {
+            listener.stopListening();
+            reactor.stop();
+        }
+
+        System.out.println("ReactorCheck passed");
+        System.exit(0);
+    }
+
+    private static Socket connect() throws IOException {
+        final Socket socket = new Socket("localhost", PORT);
+        socket.setSoTimeout(READ_TIMEOUT);
+        return socket;
+    }
+
+    private static boolean echoes(Socket socket, String data) throws IOException {
+        final String message = new Message(Message.HINT_COMMAND, data, "check", "controller").toString();
+        send(socket, message + "\n");
+
+        try {
+            return message.equals(readLine(socket));
+        }
+        catch (SocketTimeoutException ste) {
+            return false;
+        }
+    }
+
+    private static boolean isClosed(Socket socket) throws IOException {
+        try {
+            return new DataInputStream(socket.getInputStream()).read() < 0;
+        }
+        catch (SocketTimeoutException ste) {
+            return false;
+        }
+        catch (IOException e) {
+            return true; // reset
+        }
+    }
+
+    private static void send(Socket socket, String line) throws IOException {
+        socket.getOutputStream().write(line.getBytes(StandardCharsets.UTF_8));
+        socket.getOutputStream().flush();
+    }
+
+    private static void send(Socket socket, ByteBuffer frame) throws IOException {
+        final DataOutputStream stream = new DataOutputStream(socket.getOutputStream());
+        stream.write(frame.array(), 0, frame.limit());
+        stream.flush();
+    }
+
+    // byte by byte, so that nothing after the line is consumed
+    private static String readLine(Socket socket) throws IOException {
+        final StringBuilder line = new StringBuilder();
+
+        int b;
+        while ((b = socket.getInputStream().read()) >= 0 && b != '\n')
+            line.append((char) b);
+
+        if (b < 0)
+            throw new IOException("closed");
+
+        return line.toString().trim();
+    }
+
+    private static void check(boolean condition, String what) {
+        if (condition) {
+            System.out.println("ok     " + what);
+            return;
+        }
+
+        System.out.println("FAILED " + what);
+        System.exit(1);
+    }
+
+    /**
+     * Decodes the messages as the controller does for its consoles and echoes them.
+     */
+    private static class Decoder extends TcpListener {
+
+        private Decoder(NioReactor reactor) throws IOException {
+            super(PORT, TIMEOUT, reactor);
+        }
+
+        @Override
+        public void onReceiveNewConnection(TcpConnection connection) {
+        }
+
+        @Override
+        public void onReceiveMessage(TcpConnection connection, String message) {
+            if (Message.isMessage(message))
+                connection.send(Message.fromString(message).toString());
+        }
+
+        @Override
+        public void onReceiveFrame(TcpConnection connection, int type, ByteBuffer payload) {
+            if (type == Protocol.FRAME_MESSAGE)
+                connection.send(Message.fromFrame(payload).toString());
+        }
+
+        @Override
+        public void onCloseConnection(TcpConnection connection) {
+        }
+
+    }
+
+}
@@ -0,0 +1,192 @@
+package Collision;
+
+import Benchmarks.TrafficGenerator;
+import Entities.Airplane;
+import FMath.Vector3;
+import Traffic.TrafficStore;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks the states set by the collision detection against a brute force evaluation of every pair, on seeded random
+ * traffic with airplanes added on and around the cell borders of the grid, for both broad phases and kernels, full,
+ * incremental, parallel and scheduled updates, the scheduler with a budget large enough to evaluate every pair.
+ * Each configuration goes through a few ticks with a share of the fleet moving, and a few airplanes leaving and coming
+ * back in a reused slot. In the package of the kernels, which are not public.
+ * <p>
+ * Usage: {@code BroadPhaseCheck [seeds]}, by default 100; exits with 1 on the first difference.
+ */
+public class BroadPhaseCheck {
+
+    private static final int TICKS = 3;
+    private static final float MOVING_RATIO = 0.2f;
+    private static final float RETURNING_RATIO = 0.02f;
+    private static final float CELL_SIZE = CollisionDetection.HORIZONTAL_NOTICE_DISTANCE;
+
+    private static final int AMPLE_BUDGET = 10000; // ms, for the scheduler to collect and evaluate every pair
+
+    // broad phase, kernel, incremental (1) or full (0), parallelism, time budget
+    private static final int[][] CONFIGURATIONS = {
+            { CollisionDetection.BROAD_PHASE_GRID,  CollisionDetection.KERNEL_SCALAR, 0, 1, 0 },
+            { CollisionDetection.BROAD_PHASE_GRID,  CollisionDetection.KERNEL_BATCH,  0, 1, 0 },
+            { CollisionDetection.BROAD_PHASE_GRID,  CollisionDetection.KERNEL_SCALAR, 1, 1, 0 },
+            { CollisionDetection.BROAD_PHASE_GRID,  CollisionDetection.KERNEL_BATCH,  0, 3, 0 },
+            { CollisionDetection.BROAD_PHASE_GRID,  CollisionDetection.KERNEL_SCALAR, 0, 1, AMPLE_BUDGET },
+            { CollisionDetection.BROAD_PHASE_SWEEP, CollisionDetection.KERNEL_SCALAR, 0, 1, 0 },
+            { CollisionDetection.BROAD_PHASE_SWEEP, CollisionDetection.KERNEL_BATCH,  0, 1, 0 },
+            { CollisionDetection.BROAD_PHASE_SWEEP, CollisionDetection.KERNEL_SCALAR, 1, 1, 0 },
+            { CollisionDetection.BROAD_PHASE_SWEEP, CollisionDetection.KERNEL_SCALAR, 0, 1, AMPLE_BUDGET },
+    };
+
+    public static void main(String[] args) {
+        final int seeds = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+
+        long states = 0;
+        long raised = 0;
+
+        for (int seed = 0; seed < seeds; seed++) {
+            for (int[] configuration : CONFIGURATIONS) {
+                final Random random = new Random(seed);
+                final List<Airplane> airplanes = new TrafficGenerator(seed).generate(100 + random.nextInt(400));
+                addBorderPairs(airplanes, random, 50);
+
+                final TrafficStore traffic = TrafficGenerator.toStore(airplanes);
+
+                final CollisionDetection collDetect = new CollisionDetection(traffic);
+                collDetect.setBroadPhase(configuration[0]);
+                collDetect.setKernel(configuration[1]);
+                collDetect.setIncremental(configuration[2] == 1);
+                collDetect.setParallelism(configuration[3]);
+                collDetect.setTimeBudget(configuration[4]);
+
+                for (int tick = 0; tick < TICKS; tick++) {
+                    if (tick > 0)
+                        move(airplanes, traffic, random);
+
+                    collDetect.update();
+
+                    final int[] expected = bruteForce(traffic, collDetect.getHorizon());
+                    for (int slot = 0; slot < traffic.getSlotCount(); slot++) {
+                        if (!traffic.isUsed(slot))
+                            continue;
+
+                        if (traffic.getCdState(slot) != expected[slot]) {
+                            System.out.println("FAILED seed " + seed + ", tick " + tick + ", " + describe(configuration) +
+                                    ": " + traffic.getAirplane(slot).getId() + " in state " + traffic.getCdState(slot) +
+                                    " instead of " + expected[slot]);
+                            System.exit(1);
+                        }
+
+                        states++;
+                        if (expected[slot] != 0)
+                            raised++;
+                    }
+                }
+
+                collDetect.setParallelism(1);
+            }
+        }
+
+        System.out.println("BroadPhaseCheck passed: " + states + " states over " + seeds + " seeds, " + raised + " raised");
+        System.exit(0);
+    }
+
+    /**
+     * Every pair evaluated, the state of each airplane raised to the highest of its pairs.
+     */
+    private static int[] bruteForce(TrafficStore traffic, float horizon) {
+        final int slotCount = traffic.getSlotCount();
+        final int[] states = new int[slotCount];
+
+        for (int a = 0; a < slotCount; a++) {
+            if (!traffic.isUsed(a))
+                continue;
+
+            for (int b = a + 1; b < slotCount; b++) {
+                if (!traffic.isUsed(b))
+                    continue;
+
+                final int state = CollisionKernel.evaluate(traffic, a, b, horizon);
+                states[a] = Math.max(states[a], state);
+                states[b] = Math.max(states[b], state);
+            }
+        }
+
+        return states;
+    }
+
+    /**
+     * Pairs on both sides of a cell border or corner, some exactly on it or at the notice distance,
+     * on the same flight level and heading to each other, including negative coordinates.
+     */
+    private static void addBorderPairs(List<Airplane> airplanes, Random random, int count) {
+        final float size = TrafficGenerator.getAreaSize(airplanes.size());
+
+        for (int i = 0; i < count; i++) {
+            final float borderX = (random.nextInt((int) (size / CELL_SIZE) + 2) - 1) * CELL_SIZE;
+            final float borderY = (random.nextInt((int) (size / CELL_SIZE) + 2) - 1) * CELL_SIZE;
+            final float altitude = 3.048f + random.nextInt(6) * 0.3048f;
+
+            final float offset;
+            switch (i % 4) {
+                case 0:  offset = 0.0f; break;                                         // on the border
+                case 1:  offset = CELL_SIZE / 2; break;                                // notice distance apart
+                case 2:  offset = Math.ulp(borderX + CELL_SIZE) * random.nextInt(4); break;
+                default: offset = random.nextFloat() * CELL_SIZE / 2; break;
+            }
+
+            final boolean corner = random.nextBoolean();
+            final float dy = corner ? offset : random.nextFloat() * 0.5f;
+
+            airplanes.add(airplane("B" + i + "-W", borderX - offset, borderY - dy, altitude, 90.0f));
+            airplanes.add(airplane("B" + i + "-E", borderX + offset, borderY + dy, altitude + random.nextFloat() * 0.2f, 270.0f));
+        }
+    }
+
+    private static Airplane airplane(String id, float x, float y, float z, float yaw) {
+        final Airplane airplane = new Airplane(id);
+        airplane.setPosition(new Vector3(x, y, z))
+                .setPitch(0.0f)
+                .setYaw(yaw)
+                .setSpeed(500.0f);
+
+        return airplane;
+    }
+
+    private static void move(List<Airplane> airplanes, TrafficStore traffic, Random random) {
+        final Vector3 position = new Vector3();
+
+        for (Airplane airplane : airplanes) {
+            if (random.nextFloat() >= MOVING_RATIO)
+                continue;
+
+            // the slot freed last is the first reused
+            if (random.nextFloat() < RETURNING_RATIO / MOVING_RATIO) {
+                traffic.remove(airplane.getId());
+                traffic.put(airplane);
+                continue;
+            }
+
+            final int slot = traffic.getSlot(airplane.getId());
+            final float step = traffic.Speed[slot] / 3600 * 10; // km flown in ten seconds
+
+            position.set(
+                    traffic.PosX[slot] + traffic.DirX[slot] * step,
+                    traffic.PosY[slot] + traffic.DirY[slot] * step,
+                    traffic.PosZ[slot] + traffic.DirZ[slot] * step);
+
+            airplane.setPosition(position);
+            traffic.put(airplane);
+        }
+    }
+
+    private static String describe(int[] configuration) {
+        return (configuration[0] == CollisionDetection.BROAD_PHASE_SWEEP ? "sweep" : "grid") +
+                (configuration[1] == CollisionDetection.KERNEL_BATCH ? " batch" : " scalar") +
+                (configuration[2] == 1 ? " incremental" : " full") +
+                " x" + configuration[3] +
+                (configuration[4] > 0 ? " scheduled" : "");
+    }
+
+}
@@ -0,0 +1,99 @@
+package Collision;
+
+import Benchmarks.TrafficGenerator;
+import Traffic.TrafficStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost per pair of the narrow phase alone, on a fixed number of the pairs the grid reports for the fleet, in their order:
+ * the scalar kernel one pair at a time, the batch kernel with its plain loop or with the Vector API.
+ * In the package of the kernels, which are not public.
+ * <p>
+ * The vector kernel needs the {@code VectorKernel} module and {@code -jvmArgsAppend --add-modules=jdk.incubator.vector}
+ * on Java 17 or later; without them its setup fails and the other kernels are still measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(KernelBenchmark.PAIRS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class KernelBenchmark {
+
+    static final int PAIRS = 32768;
+
+    private static final long SEED = 103;
+    private static final float HORIZON = 30.0f; // seconds
+
+    @Param({"1000", "10000", "50000"})
+    public int fleetSize;
+
+    @Param({"scalar", "batch", "vector"})
+    public String kernel;
+
+    private TrafficStore m_Traffic;
+    private BatchKernel m_Batch;
+
+    // the pairs by blocks, lowest slot first
+    private final int[][] m_First = new int[PAIRS / BatchKernel.BLOCK][BatchKernel.BLOCK];
+    private final int[][] m_Second = new int[PAIRS / BatchKernel.BLOCK][BatchKernel.BLOCK];
+    private final int[] m_Flags = new int[BatchKernel.BLOCK];
+
+    @Setup
+    public void setUp() {
+        if (kernel.equals("vector") && !BatchKernel.isVectorized())
+            throw new IllegalStateException("Vector API not available, see the KernelBenchmark options");
+
+        m_Traffic = TrafficGenerator.toStore(new TrafficGenerator(SEED).generate(fleetSize));
+        m_Batch = new BatchKernel(kernel.equals("vector") ? BatchKernel.VECTOR_LANES : BatchKernel.SCALAR_LANES);
+
+        final SpatialGrid grid = new SpatialGrid(CollisionDetection.HORIZONTAL_NOTICE_DISTANCE);
+        grid.build(m_Traffic);
+
+        final int[] count = new int[1];
+        grid.forEachPair(0, 1, (a, b) -> count[0]++);
+
+        final int[] first = new int[count[0]];
+        final int[] second = new int[count[0]];
+        count[0] = 0;
+        grid.forEachPair(0, 1, (a, b) -> {
+            first[count[0]] = Math.min(a, b);
+            second[count[0]++] = Math.max(a, b);
+        });
+
+        // every n-th pair, from the start again for a small fleet
+        final int stride = Math.max(count[0] / PAIRS, 1);
+        for (int i = 0; i < PAIRS; i++) {
+            final int pair = (int) ((long) i * stride % count[0]);
+            m_First[i / BatchKernel.BLOCK][i % BatchKernel.BLOCK] = first[pair];
+            m_Second[i / BatchKernel.BLOCK][i % BatchKernel.BLOCK] = second[pair];
+        }
+    }
+
+    @Benchmark
+    public int evaluate() {
+        int states = 0;
+
+        for (int block = 0; block < m_First.length; block++) {
+            final int[] first = m_First[block];
+            final int[] second = m_Second[block];
+
+            if (kernel.equals("scalar")) {
+                for (int i = 0; i < BatchKernel.BLOCK; i++)
+                    states += CollisionKernel.evaluate(m_Traffic, first[i], second[i], HORIZON);
+
+                continue;
+            }
+
+            m_Batch.evaluate(m_Traffic, first, second, BatchKernel.BLOCK, HORIZON, m_Flags);
+            for (int i = 0; i < BatchKernel.BLOCK; i++)
+                states += m_Flags[i];
+        }
+
+        return states;
+    }
+
+}
@@ -1,9 +1,14 @@
+import Constants.Decimals;
 import Constants.Integers;
 import Constants.Strings;
 import Entities.Airplane;
+import Entities.AirplaneRenderer;
 import Entities.IAirplane;
+import Entities.Region;
+import Entities.TrafficUpdate;
 import FMath.FMath;
 import Net.Message;
+import Net.Protocol;
 import Net.TcpConnection;
 import UI.Viewport;
 import Utils.RuntimeUtils;
@@ -29,7 +34,9 @@ import javafx.scene.text.Font;
 import javafx.stage.Stage;
 
 import java.net.ConnectException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 
 /**
@@ -47,8 +54,12 @@ public class CommandConsole extends Application implements TcpConnection.EventHa
 
     private TcpConnection m_Connection;
     private final List<IAirplane> m_Airplanes;
+    private final HashMap<String, IAirplane> m_AirplaneIndex;
+    private long m_Sequence; // of the last traffic update applied, -1 while waiting for a snapshot
     private final ObservableList<String> m_LockedAirplanes;
     private final ViewController m_ViewController;
+    private float m_MinAltitude; // km, of the airplanes received
+    private float m_MaxAltitude;
     private boolean m_IsRunning;
 
     private final AnimationTimer m_AnimationTimer = new AnimationTimer() {
@@ -62,8 +73,12 @@ public class CommandConsole extends Application implements TcpConnection.EventHa
 
     public CommandConsole() {
         m_Airplanes = new ArrayList<>();
+        m_AirplaneIndex = new HashMap<>();
+        m_Sequence = -1;
         m_LockedAirplanes = FXCollections.observableArrayList();
         m_ViewController = new ViewController();
+        m_MinAltitude = 0.0f;
+        m_MaxAltitude = Decimals.AIRPLANE_MAX_ALT;
         m_IsRunning = false;
     }
 
@@ -72,6 +87,14 @@ public class CommandConsole extends Application implements TcpConnection.EventHa
         primaryStage.setTitle("Command Console");
         primaryStage.setResizable(true);
 
+        // altitude band of the sector, --altitude=<min>,<max> in km
+        final String altitude = getParameters().getNamed().get("altitude");
+        if (altitude != null) {
+            final String[] band = altitude.split(",");
+            m_MinAltitude = Float.parseFloat(band[0].trim());
+            m_MaxAltitude = Float.parseFloat(band[1].trim());
+        }
+
         final FXMLLoader loader = new FXMLLoader(getClass().getResource("/Resources/Layout/main.fxml"));
         loader.setController(m_ViewController);
 
@@ -83,7 +106,9 @@ public class CommandConsole extends Application implements TcpConnection.EventHa
 
         try {
             m_Connection = new TcpConnection(Strings.CONTROLLER_IP, Integers.MONITORING_PORT);
+            m_Connection.requestProtocol(Integers.NET_PROTOCOL);
             m_Connection.addEventHandler(this);
+            m_ViewController.subscribe();
             m_AnimationTimer.start();
         }
         catch (ConnectException ce) {
@@ -118,34 +143,108 @@ public class CommandConsole extends Application implements TcpConnection.EventHa
                 final Message msg = Message.fromString(message);
                 assert msg != null;
 
-                if (RuntimeUtils.isFlagSet(msg.Hint, Message.HINT_ALERT) &&
-                    !StringUtils.isNullOrWhitespace(msg.Data)) {
-                    Platform.runLater(() -> {
-                        Alert alert = new Alert(Alert.AlertType.INFORMATION);
-                        alert.setTitle("Controller message");
-                        alert.setContentText(msg.Data);
-                        alert.show();
-                    });
-                }
-                else if (RuntimeUtils.isFlagSet(msg.Hint, Message.HINT_AIRPLANE_LIST)) {
-                    m_Airplanes.clear();
-                    m_Airplanes.addAll(Airplane.fromStringMultiple(msg.Data));
-                    // sort by altitude in desc order
-                    m_Airplanes.sort((a1, a2) -> (int) ((a1.getAltitude() - a2.getAltitude()) * 1000));
-                    // unlock disconnected airplanes
-                    m_LockedAirplanes.removeIf(id -> m_Airplanes.stream().noneMatch(ap -> id.equals(ap.getId())));
-                }
+                onReceiveMessage(msg);
+            }
+        }
+    }
 
-                if (RuntimeUtils.isFlagSet(msg.Hint, Message.HINT_LOCK_ACK)) {
-                    if (!m_LockedAirplanes.contains(msg.To)) {
-                        m_LockedAirplanes.add(msg.To);
-                    }
-                }
-                else if (RuntimeUtils.isFlagSet(msg.Hint, Message.HINT_RELEASE_ACK)) {
-                    m_LockedAirplanes.remove(msg.To);
-                }
+    @Override
+    public void onReceiveFrame(TcpConnection connection, int type, ByteBuffer payload) {
+        if (!m_IsRunning) return;
+
+        synchronized (m_Mutex) {
+            if (type == Protocol.FRAME_MESSAGE) {
+                onReceiveMessage(Message.fromFrame(payload));
+            }
+            else {
+                final TrafficUpdate update = TrafficUpdate.fromFrame(type, payload);
+                if (update != null)
+                    onReceiveUpdate(update);
+            }
+        }
+    }
+
+    private void onReceiveMessage(Message msg) {
+        if (RuntimeUtils.isFlagSet(msg.Hint, Message.HINT_ALERT) &&
+            !StringUtils.isNullOrWhitespace(msg.Data)) {
+            Platform.runLater(() -> {
+                Alert alert = new Alert(Alert.AlertType.INFORMATION);
+                alert.setTitle("Controller message");
+                alert.setContentText(msg.Data);
+                alert.show();
+            });
+        }
+        else if (RuntimeUtils.isFlagSet(msg.Hint, Message.HINT_AIRPLANE_LIST | Message.HINT_AIRPLANE_DELTA)) {
+            onReceiveUpdate(TrafficUpdate.fromMessage(msg));
+        }
+
+        if (RuntimeUtils.isFlagSet(msg.Hint, Message.HINT_LOCK_ACK)) {
+            if (!m_LockedAirplanes.contains(msg.To)) {
+                m_LockedAirplanes.add(msg.To);
             }
         }
+        else if (RuntimeUtils.isFlagSet(msg.Hint, Message.HINT_RELEASE_ACK)) {
+            m_LockedAirplanes.remove(msg.To);
+        }
+    }
+
+    private void onReceiveUpdate(TrafficUpdate update) {
+        if (update.IsSnapshot) {
+            m_Sequence = update.Sequence;
+            setAirplanes(update.Airplanes);
+        }
+        else if (m_Sequence < 0 || update.Sequence > m_Sequence + 1) {
+            // an update was missed: the deltas are ignored, and the snapshot requested, until it arrives
+            m_Sequence = -1;
+            m_Connection.send(new Message(Message.HINT_RESYNC, null));
+        }
+        else if (update.Sequence == m_Sequence + 1) {
+            m_Sequence = update.Sequence;
+            applyDelta(update);
+        }
+    }
+
+    private void setAirplanes(List<Airplane> airplanes) {
+        m_Airplanes.clear();
+        m_Airplanes.addAll(airplanes);
+        m_AirplaneIndex.clear();
+        m_Airplanes.forEach(ap -> m_AirplaneIndex.put(ap.getId(), ap));
+        sortAirplanes();
+        // unlock disconnected airplanes
+        m_LockedAirplanes.removeIf(id -> !m_AirplaneIndex.containsKey(id));
+    }
+
+    private void applyDelta(TrafficUpdate update) {
+        if (!update.Removed.isEmpty()) {
+            update.Removed.forEach(m_AirplaneIndex::remove);
+            m_Airplanes.removeIf(ap -> !m_AirplaneIndex.containsKey(ap.getId()));
+            m_LockedAirplanes.removeAll(update.Removed);
+        }
+
+        for (Airplane airplane : update.Airplanes) {
+            final IAirplane tracked = m_AirplaneIndex.get(airplane.getId());
+
+            if (tracked == null) {
+                m_AirplaneIndex.put(airplane.getId(), airplane);
+                m_Airplanes.add(airplane);
+            }
+            else {
+                tracked.setPosition(airplane.getPosition())
+                       .setRoll(airplane.getRoll())
+                       .setPitch(airplane.getPitch())
+                       .setYaw(airplane.getYaw())
+                       .setSpeed(airplane.getSpeed())
+                       .setCdState(airplane.getCdState())
+                       .setDispState(airplane.getDispState());
+            }
+        }
+
+        sortAirplanes();
+    }
+
+    private void sortAirplanes() {
+        // sort by altitude in desc order
+        m_Airplanes.sort((a1, a2) -> (int) ((a1.getAltitude() - a2.getAltitude()) * 1000));
     }
 
     @SuppressWarnings("Duplicates")
@@ -179,6 +278,7 @@ public class CommandConsole extends Application implements TcpConnection.EventHa
         float cursorX;
         float cursorY;
         boolean m_IsReady;
+        Region m_Region;
 
         private ViewController() {
             m_Viewport = new Viewport(0, 0, CanvasPadding);
@@ -200,10 +300,10 @@ public class CommandConsole extends Application implements TcpConnection.EventHa
                 for (IAirplane ap : m_Airplanes) {
                     if (ap.hit(event.getX(), event.getY())) {
                         if (event.getButton() == MouseButton.PRIMARY) {
-                            m_Connection.send(new Message(Message.HINT_LOCK, null, null, ap.getId()).toString());
+                            m_Connection.send(new Message(Message.HINT_LOCK, null, null, ap.getId()));
                         }
                         else if (event.getButton() == MouseButton.SECONDARY) {
-                            m_Connection.send(new Message(Message.HINT_RELEASE, null, null, ap.getId()).toString());
+                            m_Connection.send(new Message(Message.HINT_RELEASE, null, null, ap.getId()));
                         }
                         else if (event.getButton() == MouseButton.MIDDLE) {
                             if (m_ComboAirplanes.getItems().contains(ap.getId())) {
@@ -223,6 +323,38 @@ public class CommandConsole extends Application implements TcpConnection.EventHa
 
             m_BtnSend.setOnMouseClicked(event -> sendMessage());
             m_TextInput.setOnAction(event -> sendMessage());
+
+            m_Canvas.widthProperty().addListener((observable, oldValue, newValue) -> {
+                m_Viewport.Width = newValue.floatValue();
+                subscribe();
+            });
+
+            m_Canvas.heightProperty().addListener((observable, oldValue, newValue) -> {
+                m_Viewport.Height = newValue.floatValue();
+                subscribe();
+            });
+        }
+
+        /**
+         * Subscribes to the airplanes shown on the canvas, and those about to enter it; sent again whenever it changes.
+         */
+        private void subscribe() {
+            if (m_Connection == null) return;
+
+            final float margin = CanvasPadding / Decimals.MAP_SCALE;
+            final Region region = new Region(
+                    -margin,
+                    -margin,
+                    m_Viewport.Width / Decimals.MAP_SCALE + margin,
+                    m_Viewport.Height / Decimals.MAP_SCALE + margin,
+                    m_MinAltitude,
+                    m_MaxAltitude
+            );
+
+            if (region.equals(m_Region)) return;
+
+            m_Region = region;
+            m_Connection.send(new Message(Message.HINT_SUBSCRIBE, region.toString()));
         }
 
         private void update() {
@@ -231,7 +363,7 @@ public class CommandConsole extends Application implements TcpConnection.EventHa
             m_Gfx.clearRect(0.0, 0.0, m_Viewport.Width, m_Viewport.Height);
 
             for (IAirplane ap : m_Airplanes) {
-                Airplane.draw(m_Gfx, ap);
+                AirplaneRenderer.draw(m_Gfx, ap);
                 if (ap.getBoundsRect().contains(cursorX, cursorY)) {
                     drawDetails(ap);
                 }
@@ -272,7 +404,7 @@ public class CommandConsole extends Application implements TcpConnection.EventHa
             if (!StringUtils.isNullOrWhitespace(text)) {
                 String apId = m_ComboAirplanes.getSelectionModel().getSelectedItem();
                 if (!StringUtils.isNullOrEmpty(apId)) {
-                    m_Connection.send(new Message(Message.HINT_COMMAND, text, null, apId).toString());
+                    m_Connection.send(new Message(Message.HINT_COMMAND, text, null, apId));
                     m_TextInput.clear();
                     m_TextArea.appendText(text);
                     m_TextArea.appendText("\n");
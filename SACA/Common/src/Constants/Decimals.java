@@ -2,6 +2,8 @@ package Constants;
 
 public class Decimals {
     public static final float MAP_SCALE = 4.64f;
+    public static final float MAP_WIDTH = 1600 / MAP_SCALE; // km, shown on the 1600x900 canvas of the consoles
+    public static final float MAP_HEIGHT = 900 / MAP_SCALE; // km
     public static final float AIRPLANE_MAX_PITCH = 20.0f;
     public static final float AIRPLANE_MAX_ROLL = 80.0f;
     public static final float AIRPLANE_MAX_SPEED = 926.0f;
@@ -4,4 +4,14 @@ public class Integers {
     public static final int PILOTING_PORT = 15500;
     public static final int MONITORING_PORT = 15501;
     public static final int SOCKET_TIMEOUT = 15000;
+    public static final int NET_IO_THREADS = 2;
+    public static final int NET_PROTOCOL = 1; // proposed by the clients, 0 for text, 1 for binary
+    public static final int REPORT_MAX_INTERVAL = 5000; // ms between pilot reports when the controller can extrapolate, 0 to report every 500 ms
+    public static final int NET_QUEUE_LIMIT = 64; // messages waiting to be written to a console, the oldest dropped beyond
+    public static final int INGEST_PARSER_THREADS = 1;
+    public static final int INGEST_QUEUE_SIZE = 8192; // pilot reports read and not decoded yet, per parser thread
+    public static final int COLLISION_DETECTION_THREADS = 1;
+    public static final int COLLISION_DETECTION_BUDGET = 0; // milliseconds per update, 0 for unbounded
+    public static final int COLLISION_DETECTION_RATE = 4; // updates per second
+    public static final int BROADCAST_RATE = 1; // traffic updates sent to the consoles per second
 }
@@ -5,17 +5,16 @@ import FMath.FMath;
 import FMath.Ray;
 import FMath.Rotator;
 import FMath.Vector3;
+import Net.Protocol;
+import Net.SharedBuffer;
 import Net.TcpConnection;
 import Utils.StringUtils;
-import javafx.scene.canvas.GraphicsContext;
-import javafx.scene.effect.DropShadow;
-import javafx.scene.image.Image;
-import javafx.scene.paint.Color;
 import javafx.scene.shape.Rectangle;
-import javafx.scene.text.Font;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Random;
 import java.util.regex.Matcher;
@@ -39,7 +38,17 @@ public class Airplane implements IAirplane {
     public static final int CD_MASK = 0x03;
     public static final int DISP_MASK = 0x04;
 
-    private static final String RegexPattern = "pln::<([^;]+);([^;]+);(\\d+(?:\\.\\d+));(\\d+(?:\\.\\d+));(\\d+(?:\\.\\d+));(\\d+(?:\\.\\d+)?);(\\d+)>";
+    // binary protocol state following the id: position, roll, pitch, yaw, speed and flags
+    private static final int STATE_SIZE = 7 * 4 + 4;
+
+    // position reports: periodic, or checked against the dead reckoning of the controller
+    private static final long REPORT_INTERVAL = 500; // ms, also the shortest interval between checked reports
+    private static final long REPORT_CHECK_INTERVAL = 100; // ms
+    private static final float REPORT_POSITION_TOLERANCE = 0.05f; // km
+    private static final float REPORT_ANGLE_TOLERANCE = 0.5f; // degrees
+    private static final float REPORT_SPEED_TOLERANCE = 1.0f; // km/h
+
+    private static final Pattern RegexPattern = Pattern.compile("pln::<([^;]+);([^;]+);(\\d+(?:\\.\\d+));(\\d+(?:\\.\\d+));(\\d+(?:\\.\\d+));(\\d+(?:\\.\\d+)?);(\\d+)>");
 
     private Vector3 m_Position;
     private Vector3 m_Direction;
@@ -50,19 +59,43 @@ public class Airplane implements IAirplane {
     private float m_Speed;
 
     private String m_Id;
+    private byte[] m_EncodedId;
     private int Flags;
     private boolean m_IsFlying;
 
     private TcpConnection m_Connection;
     private Rectangle m_Rect;
 
+    // position reports, encoded into reused buffers
+    private final SharedBuffer.Pool m_ReportBuffers;
+
+    // last reported state, from which the controller extrapolates
+    private long m_ReportMaxInterval;
+    private final Vector3 m_ReportedPosition;
+    private final Vector3 m_ReportedDirection;
+    private final Vector3 m_Predicted;
+    private float m_ReportedRoll;
+    private float m_ReportedPitch;
+    private float m_ReportedYaw;
+    private float m_ReportedSpeed;
+    private long m_ReportTime;
+    private boolean m_HasReported;
+
     private Thread m_WorkerThread = new Thread() {
         @Override
         public void run() {
             while (m_IsFlying) {
                 try {
-                    sendCoordinates();
-                    Thread.sleep(500);
+                    if (m_ReportMaxInterval <= 0) {
+                        sendCoordinates();
+                        Thread.sleep(REPORT_INTERVAL);
+                        continue;
+                    }
+
+                    if (isReportDue(now()))
+                        sendCoordinates();
+
+                    Thread.sleep(REPORT_CHECK_INTERVAL);
                 }
                 catch (InterruptedException ie) {
                     if (!m_IsFlying)
@@ -73,17 +106,28 @@ public class Airplane implements IAirplane {
     };
 
     public Airplane() {
+        this(randomId());
+    }
+
+    public Airplane(String id) {
         m_Position = new Vector3();
         m_Roll = 0.0f;
         m_Pitch = 0.0f;
         m_Yaw = 0.0f;
         m_Speed = 0.0f;
 
-        Random random = new Random(System.currentTimeMillis());
-        m_Id = String.format("AP-%d%d", random.nextInt(10), random.nextInt(10));
+        m_Id = id;
+        m_EncodedId = Protocol.encode(id);
 
-        m_Rect = new Rectangle(25, 25);
+        m_Rect = null;
         m_Connection = null;
+        m_ReportBuffers = new SharedBuffer.Pool();
+
+        m_ReportMaxInterval = Constants.Integers.REPORT_MAX_INTERVAL;
+        m_ReportedPosition = new Vector3();
+        m_ReportedDirection = new Vector3();
+        m_Predicted = new Vector3();
+        m_HasReported = false;
 
         m_IsFlying = false;
 
@@ -91,9 +135,9 @@ public class Airplane implements IAirplane {
         updateDirection();
     }
 
-    private Airplane setId(String id) {
-        this.m_Id = id;
-        return this;
+    private static String randomId() {
+        Random random = new Random(System.currentTimeMillis());
+        return String.format("AP-%d%d", random.nextInt(10), random.nextInt(10));
     }
 
     private Airplane setFlags(int flags) {
@@ -231,18 +275,20 @@ public class Airplane implements IAirplane {
 
     @Override
     public Rectangle getBoundsRect() {
+        final Rectangle rect = getRect();
+
         return new Rectangle
         (
-            m_Rect.getX(),
-            m_Rect.getY(),
-            m_Rect.getWidth(),
-            m_Rect.getHeight()
+            rect.getX(),
+            rect.getY(),
+            rect.getWidth(),
+            rect.getHeight()
         );
     }
 
     @Override
     public boolean hit(double x, double y) {
-        return m_Rect.contains(x, y);
+        return getRect().contains(x, y);
     }
 
     public void addConnectionEventHandler(TcpConnection.EventHandler handler) {
@@ -281,6 +327,7 @@ public class Airplane implements IAirplane {
         if (m_Connection != null) return;
 
         m_Connection = new TcpConnection(Strings.CONTROLLER_IP, Constants.Integers.PILOTING_PORT);
+        m_Connection.requestProtocol(Constants.Integers.NET_PROTOCOL);
     }
 
     public void closeConnection() throws IOException {
@@ -293,20 +340,103 @@ public class Airplane implements IAirplane {
     public void sendCoordinates() {
         if (m_Connection == null) return;
 
-        m_Connection.send(this.toString());
+        final SharedBuffer report = m_Connection.isBinary()
+                ? toFrame(m_ReportBuffers)
+                : TcpConnection.encodeLine(this.toString(), m_ReportBuffers);
+
+        // a single slot per airplane: a report not written yet is stale, the new one replaces it and its buffer is reused
+        m_Connection.send(report, m_Id);
+        report.release();
+
+        setReported(now());
+    }
+
+    /**
+     * Reports only once the state extrapolated by the controller drifts beyond the tolerances or after the interval,
+     * in milliseconds; 0 to report every 500 ms.
+     */
+    public void setReportMaxInterval(long interval) {
+        m_ReportMaxInterval = interval;
+    }
+
+    private boolean isReportDue(long now) {
+        if (!m_HasReported || now - m_ReportTime >= m_ReportMaxInterval)
+            return true;
+
+        // no more often than the periodic reports, while maneuvering
+        if (now - m_ReportTime < REPORT_INTERVAL)
+            return false;
+
+        extrapolate(m_ReportedPosition, m_ReportedDirection, m_ReportedSpeed, now - m_ReportTime, m_Predicted);
+
+        final float dx = m_Position.X - m_Predicted.X;
+        final float dy = m_Position.Y - m_Predicted.Y;
+        final float dz = m_Position.Z - m_Predicted.Z;
+
+        return dx * dx + dy * dy + dz * dz > REPORT_POSITION_TOLERANCE * REPORT_POSITION_TOLERANCE ||
+               angleDistance(m_Roll, m_ReportedRoll) > REPORT_ANGLE_TOLERANCE ||
+               angleDistance(m_Pitch, m_ReportedPitch) > REPORT_ANGLE_TOLERANCE ||
+               angleDistance(m_Yaw, m_ReportedYaw) > REPORT_ANGLE_TOLERANCE ||
+               Math.abs(m_Speed - m_ReportedSpeed) > REPORT_SPEED_TOLERANCE;
+    }
+
+    private void setReported(long now) {
+        m_ReportedPosition.set(m_Position);
+        m_ReportedDirection.set(m_Direction);
+        m_ReportedRoll = m_Roll;
+        m_ReportedPitch = m_Pitch;
+        m_ReportedYaw = m_Yaw;
+        m_ReportedSpeed = m_Speed;
+        m_ReportTime = now;
+        m_HasReported = true;
+    }
+
+    private static float angleDistance(float a1, float a2) {
+        final float distance = Math.abs(a1 - a2) % 360.0f;
+        return Math.min(distance, 360.0f - distance);
+    }
+
+    private static long now() {
+        return System.nanoTime() / 1000000;
     }
 
     public void update(long delta) {
-        m_Position.add(Vector3.multiply(m_Direction, (m_Speed / 3600) * (delta / 1000.0f)));
-        setAltitude(getAltitude());
+        extrapolate(m_Position, m_Direction, m_Speed, delta, m_Position);
         updateBoundsRect();
     }
 
+    /**
+     * Dead reckoning: position after flying straight for the elapsed milliseconds, written to the result.
+     * Pilots and controller extrapolate the same way, so that the pilots only report once it no longer holds.
+     */
+    public static Vector3 extrapolate(Vector3 position, Vector3 direction, float speed, long elapsed, Vector3 result) {
+        final float distance = (speed / 3600) * (elapsed / 1000.0f);
+
+        return result.set(
+                position.X + direction.X * distance,
+                position.Y + direction.Y * distance,
+                Math.min(Math.max(0.0f, position.Z + direction.Z * distance), AIRPLANE_MAX_ALT)
+        );
+    }
+
     private void updateDirection() {
         m_Direction = new Rotator(m_Roll, m_Pitch, m_Yaw).getRotated(new Vector3(1.0f, 0.0f, 0.0f)).getNormalized();
     }
 
+    private Rectangle getRect() {
+        // only created once drawn or hit, the controller does without JavaFX
+        if (m_Rect == null) {
+            m_Rect = new Rectangle(25, 25);
+            updateBoundsRect();
+        }
+
+        return m_Rect;
+    }
+
     private void updateBoundsRect() {
+        if (m_Rect == null)
+            return;
+
         m_Rect.setX(m_Position.X * MAP_SCALE - m_Rect.getWidth() / 2);
         m_Rect.setY(m_Position.Y * MAP_SCALE - m_Rect.getHeight() / 2);
     }
@@ -324,55 +454,142 @@ public class Airplane implements IAirplane {
         );
     }
 
-    public static void draw(GraphicsContext ctx, IAirplane airplane) {
-        final Vector3 direction = airplane.getDirection();
-        final String apId = airplane.getId();
-        final Rectangle rect = airplane.getBoundsRect();
-
-        final Image img;
-        switch (airplane.getCdState()) {
-            case FLAG_CD_PANIC:
-                img = Resources.Images.airplane_danger;
-                break;
-            case FLAG_CD_WARN:
-                img = Resources.Images.airplane_warn;
-                break;
-            default:
-                img = Resources.Images.airplane;
-                break;
-        }
+    /**
+     * Binary protocol frame of the airplane state: {@code [id: string][x, y, z, roll, pitch, yaw, speed: float][flags: int]}.
+     */
+    public ByteBuffer toFrame() {
+        final ByteBuffer frame = Protocol.allocate(Protocol.FRAME_AIRPLANE, getFrameSize(m_EncodedId));
+        writeState(frame, m_EncodedId, this);
+        frame.flip();
+        return frame;
+    }
 
-        final double xyRotAngle = Math.toDegrees(Math.atan2(direction.Y, direction.X));
+    /**
+     * Same frame in a buffer of the pool.
+     */
+    public SharedBuffer toFrame(SharedBuffer.Pool pool) {
+        final SharedBuffer frame = pool.acquire(Protocol.HEADER_SIZE + getFrameSize(m_EncodedId));
+        final ByteBuffer buffer = frame.getBuffer();
 
-        ctx.save();
-            ctx.translate(rect.getX(), rect.getY());
+        Protocol.putHeader(buffer, Protocol.FRAME_AIRPLANE, getFrameSize(m_EncodedId));
+        writeState(buffer, m_EncodedId, this);
+        buffer.flip();
+        return frame;
+    }
 
-            ctx.setFill(Color.BLACK);
-            ctx.fillRect(-5, rect.getHeight(), rect.getWidth() + 5, 12);
+    /**
+     * Binary protocol frame of several airplane states: {@code [count: int]} followed by the states.
+     */
+    public static ByteBuffer toListFrame(Collection<? extends IAirplane> airplanes) {
+        final byte[][] ids = encodeIds(airplanes);
+        final ByteBuffer frame = ByteBuffer.allocate(Protocol.HEADER_SIZE + getListSize(ids));
+        writeList(frame, ids, airplanes);
+        return frame;
+    }
 
-            ctx.setFont(Font.font("Consolas", 10));
-            ctx.setFill(Color.WHITE);
-            ctx.fillText(apId, -4.0, rect.getHeight() + 9.0);
+    /**
+     * Same frame in a buffer of the pool, for sending to several connections.
+     */
+    public static SharedBuffer toListFrame(Collection<? extends IAirplane> airplanes, SharedBuffer.Pool pool) {
+        final byte[][] ids = encodeIds(airplanes);
+        final SharedBuffer frame = pool.acquire(Protocol.HEADER_SIZE + getListSize(ids));
+        writeList(frame.getBuffer(), ids, airplanes);
+        return frame;
+    }
 
-            ctx.translate(rect.getWidth() / 2, rect.getHeight() / 2);
-            ctx.rotate(xyRotAngle);
-            ctx.translate(-rect.getWidth() / 2, -rect.getHeight() / 2);
+    static byte[][] encodeIds(Collection<? extends IAirplane> airplanes) {
+        final byte[][] ids = new byte[airplanes.size()][];
 
-            final Color shadowColor = (airplane.getDispState() == FLAG_DISP_HIGHLIGHTED) ? Color.YELLOW : Color.BLACK;
+        int i = 0;
+        for (IAirplane airplane : airplanes)
+            ids[i++] = Protocol.encode(airplane.getId());
 
-            ctx.setEffect(new DropShadow(3.0, 0.0, 0.0, shadowColor));
-            ctx.drawImage(img, 0, 0, rect.getWidth(), rect.getHeight());
-            ctx.setEffect(null);
-        ctx.restore();
+        return ids;
+    }
+
+    /**
+     * Bytes taken by an airplane list, the count and the states.
+     */
+    static int getListSize(byte[][] ids) {
+        int size = 4;
+        for (byte[] id : ids)
+            size += getFrameSize(id);
+
+        return size;
+    }
+
+    private static void writeList(ByteBuffer frame, byte[][] ids, Collection<? extends IAirplane> airplanes) {
+        Protocol.putHeader(frame, Protocol.FRAME_AIRPLANE_LIST, getListSize(ids));
+        putList(frame, ids, airplanes);
+        frame.flip();
+    }
+
+    static void putList(ByteBuffer frame, byte[][] ids, Collection<? extends IAirplane> airplanes) {
+        frame.putInt(ids.length);
+
+        int i = 0;
+        for (IAirplane airplane : airplanes)
+            writeState(frame, ids[i++], airplane);
+    }
+
+    private static int getFrameSize(byte[] id) {
+        return Protocol.sizeOf(id) + STATE_SIZE;
+    }
+
+    private static void writeState(ByteBuffer frame, byte[] id, IAirplane airplane) {
+        final Vector3 position = airplane.getPosition();
+
+        Protocol.putString(frame, id);
+        frame.putFloat(position.X).putFloat(position.Y).putFloat(position.Z)
+             .putFloat(airplane.getRoll())
+             .putFloat(airplane.getPitch())
+             .putFloat(airplane.getYaw())
+             .putFloat(airplane.getSpeed())
+             .putInt(airplane.getCdState() | airplane.getDispState());
+    }
+
+    /**
+     * Id of the state at the current position of the payload, to be followed by {@link #readState(ByteBuffer, IAirplane)}.
+     */
+    public static String readId(ByteBuffer payload) {
+        return Protocol.getString(payload);
+    }
+
+    /**
+     * Applies the state following the id to the airplane, except for the flags.
+     * @return the flags of the state
+     */
+    public static int readState(ByteBuffer payload, IAirplane airplane) {
+        airplane.setPosition(new Vector3(payload.getFloat(), payload.getFloat(), payload.getFloat()))
+                .setRoll(payload.getFloat())
+                .setPitch(payload.getFloat())
+                .setYaw(payload.getFloat())
+                .setSpeed(payload.getFloat());
+
+        return payload.getInt();
+    }
+
+    public static Airplane fromFrame(ByteBuffer payload) {
+        final Airplane airplane = new Airplane(readId(payload));
+        airplane.setFlags(readState(payload, airplane));
+        return airplane;
+    }
+
+    public static List<Airplane> fromListFrame(ByteBuffer payload) {
+        final int count = payload.getInt();
+        final List<Airplane> result = new ArrayList<>(Math.min(count, payload.remaining() / STATE_SIZE));
+
+        for (int i = 0; i < count; i++)
+            result.add(fromFrame(payload));
+
+        return result;
     }
 
     public static Airplane fromString(String str) {
-        Pattern p = Pattern.compile(RegexPattern);
-        Matcher m = p.matcher(str);
+        Matcher m = RegexPattern.matcher(str);
 
         if (m.matches()) {
-            return (Airplane) new Airplane()
-                    .setId(m.group(1))
+            return (Airplane) new Airplane(m.group(1))
                     .setFlags(Integer.parseInt(m.group(7)))
                     .setPosition(Vector3.fromString(StringUtils.fromBase64(m.group(2))))
                     .setRoll(Float.parseFloat(m.group(3)))
@@ -386,14 +603,12 @@ public class Airplane implements IAirplane {
     }
 
     public static List<Airplane> fromStringMultiple(String str) {
-        Pattern p = Pattern.compile(RegexPattern);
-        Matcher m = p.matcher(str);
+        Matcher m = RegexPattern.matcher(str);
 
         List<Airplane> result = new ArrayList<>();
 
         while (m.find()) {
-            Airplane airplane = (Airplane) new Airplane()
-                    .setId(m.group(1))
+            Airplane airplane = (Airplane) new Airplane(m.group(1))
                     .setFlags(Integer.parseInt(m.group(7)))
                     .setPosition(Vector3.fromString(StringUtils.fromBase64(m.group(2))))
                     .setRoll(Float.parseFloat(m.group(3)))
@@ -0,0 +1,65 @@
+package Entities;
+
+import FMath.Vector3;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.effect.DropShadow;
+import javafx.scene.image.Image;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.text.Font;
+
+import static Entities.Airplane.FLAG_CD_PANIC;
+import static Entities.Airplane.FLAG_CD_WARN;
+import static Entities.Airplane.FLAG_DISP_HIGHLIGHTED;
+
+/**
+ * Drawing of the airplanes on a canvas, apart from {@link Airplane} so that the controller runs without JavaFX.
+ */
+public class AirplaneRenderer {
+
+    private AirplaneRenderer() {
+    }
+
+    public static void draw(GraphicsContext ctx, IAirplane airplane) {
+        final Vector3 direction = airplane.getDirection();
+        final String apId = airplane.getId();
+        final Rectangle rect = airplane.getBoundsRect();
+
+        final Image img;
+        switch (airplane.getCdState()) {
+            case FLAG_CD_PANIC:
+                img = Resources.Images.airplane_danger;
+                break;
+            case FLAG_CD_WARN:
+                img = Resources.Images.airplane_warn;
+                break;
+            default:
+                img = Resources.Images.airplane;
+                break;
+        }
+
+        final double xyRotAngle = Math.toDegrees(Math.atan2(direction.Y, direction.X));
+
+        ctx.save();
+            ctx.translate(rect.getX(), rect.getY());
+
+            ctx.setFill(Color.BLACK);
+            ctx.fillRect(-5, rect.getHeight(), rect.getWidth() + 5, 12);
+
+            ctx.setFont(Font.font("Consolas", 10));
+            ctx.setFill(Color.WHITE);
+            ctx.fillText(apId, -4.0, rect.getHeight() + 9.0);
+
+            ctx.translate(rect.getWidth() / 2, rect.getHeight() / 2);
+            ctx.rotate(xyRotAngle);
+            ctx.translate(-rect.getWidth() / 2, -rect.getHeight() / 2);
+
+            final Color shadowColor = (airplane.getDispState() == FLAG_DISP_HIGHLIGHTED) ? Color.YELLOW : Color.BLACK;
+
+            ctx.setEffect(new DropShadow(3.0, 0.0, 0.0, shadowColor));
+            ctx.drawImage(img, 0, 0, rect.getWidth(), rect.getHeight());
+            ctx.setEffect(null);
+        ctx.restore();
+    }
+
+}
@@ -0,0 +1,96 @@
+package Entities;
+
+import FMath.Vector3;
+import Net.Message;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Part of the airspace a console subscribes to with {@link Message#HINT_SUBSCRIBE}: an area of the map, in kilometers,
+ * and an altitude band. The console then only receives the airplanes inside it.
+ * In text, {@code rgn::<minX;minY;maxX;maxY;minAltitude;maxAltitude>}.
+ */
+public class Region {
+
+    private static final Pattern RegexPattern = Pattern.compile("rgn::<([^;>]+);([^;>]+);([^;>]+);([^;>]+);([^;>]+);([^;>]+)>");
+
+    public final float MinX;
+    public final float MinY;
+    public final float MaxX;
+    public final float MaxY;
+    public final float MinAltitude;
+    public final float MaxAltitude;
+
+    public Region(float minX, float minY, float maxX, float maxY, float minAltitude, float maxAltitude) {
+        MinX = Math.min(minX, maxX);
+        MinY = Math.min(minY, maxY);
+        MaxX = Math.max(minX, maxX);
+        MaxY = Math.max(minY, maxY);
+        MinAltitude = Math.min(minAltitude, maxAltitude);
+        MaxAltitude = Math.max(minAltitude, maxAltitude);
+    }
+
+    public boolean contains(Vector3 position) {
+        return contains(position.X, position.Y, position.Z);
+    }
+
+    public boolean contains(float x, float y, float altitude) {
+        return x >= MinX && x <= MaxX &&
+               y >= MinY && y <= MaxY &&
+               altitude >= MinAltitude && altitude <= MaxAltitude;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof Region))
+            return false;
+
+        final Region region = (Region) other;
+        return region.MinX == MinX && region.MinY == MinY && region.MaxX == MaxX && region.MaxY == MaxY &&
+               region.MinAltitude == MinAltitude && region.MaxAltitude == MaxAltitude;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = Float.floatToIntBits(MinX);
+        hash = 31 * hash + Float.floatToIntBits(MinY);
+        hash = 31 * hash + Float.floatToIntBits(MaxX);
+        hash = 31 * hash + Float.floatToIntBits(MaxY);
+        hash = 31 * hash + Float.floatToIntBits(MinAltitude);
+        hash = 31 * hash + Float.floatToIntBits(MaxAltitude);
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        // not formatted, the decimal separator does not depend on the locale
+        return "rgn::<" + MinX + ';' + MinY + ';' + MaxX + ';' + MaxY + ';' + MinAltitude + ';' + MaxAltitude + '>';
+    }
+
+    public static Region fromString(String str) {
+        if (str == null)
+            return null;
+
+        final Matcher m = RegexPattern.matcher(str);
+        if (m.matches()) {
+            try {
+                return new Region(
+                        Float.parseFloat(m.group(1)),
+                        Float.parseFloat(m.group(2)),
+                        Float.parseFloat(m.group(3)),
+                        Float.parseFloat(m.group(4)),
+                        Float.parseFloat(m.group(5)),
+                        Float.parseFloat(m.group(6))
+                );
+            }
+            catch (NumberFormatException nfe) {
+                // falls through
+            }
+        }
+
+        System.err.println("Invalid serialized Region: " + str);
+        return null;
+    }
+
+}
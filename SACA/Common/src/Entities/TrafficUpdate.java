@@ -0,0 +1,152 @@
+package Entities;
+
+import Net.Message;
+import Net.Protocol;
+import Net.SharedBuffer;
+import Utils.RuntimeUtils;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Traffic sent by the controller to the consoles: a snapshot of every airplane, or the delta since the previous update,
+ * with the airplanes added or changed and the ids of those removed.
+ * <p>
+ * Updates are numbered; a delta applies to the state of the previous sequence number, and a console missing one waits
+ * for the snapshot it requests with {@link Message#HINT_RESYNC}.
+ * In text, the data of the {@link Message#HINT_AIRPLANE_LIST} and {@link Message#HINT_AIRPLANE_DELTA} messages is
+ * {@code seq::<sequence>}, then a {@code rem::<id>} for each removed airplane, then the airplanes.
+ */
+public class TrafficUpdate {
+
+    private static final Pattern SequencePattern = Pattern.compile("^seq::<(\\d+)>");
+    private static final Pattern RemovedPattern = Pattern.compile("rem::<([^;>]+)>");
+
+    public final long Sequence; // -1 for a list with no sequence number
+    public final boolean IsSnapshot;
+    public final List<String> Removed;
+    public final List<Airplane> Airplanes;
+
+    public TrafficUpdate(long sequence, boolean isSnapshot, List<String> removed, List<Airplane> airplanes) {
+        Sequence = sequence;
+        IsSnapshot = isSnapshot;
+        Removed = removed;
+        Airplanes = airplanes;
+    }
+
+    public static Message toSnapshotMessage(long sequence, Collection<? extends IAirplane> airplanes) {
+        return new Message(Message.HINT_AIRPLANE_LIST, toData(sequence, Collections.emptyList(), airplanes));
+    }
+
+    public static Message toDeltaMessage(long sequence, Collection<String> removed, Collection<? extends IAirplane> changed) {
+        return new Message(Message.HINT_AIRPLANE_DELTA, toData(sequence, removed, changed));
+    }
+
+    private static String toData(long sequence, Collection<String> removed, Collection<? extends IAirplane> airplanes) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("seq::<").append(sequence).append('>');
+
+        for (String id : removed)
+            sb.append("rem::<").append(id).append('>');
+
+        airplanes.forEach(sb::append);
+        return sb.toString();
+    }
+
+    public static SharedBuffer toSnapshotFrame(long sequence, Collection<? extends IAirplane> airplanes, SharedBuffer.Pool pool) {
+        return toFrame(Protocol.FRAME_AIRPLANE_SNAPSHOT, sequence, Collections.emptyList(), airplanes, pool);
+    }
+
+    public static SharedBuffer toDeltaFrame(long sequence, Collection<String> removed, Collection<? extends IAirplane> changed,
+                                            SharedBuffer.Pool pool) {
+        return toFrame(Protocol.FRAME_AIRPLANE_DELTA, sequence, removed, changed, pool);
+    }
+
+    private static SharedBuffer toFrame(int type, long sequence, Collection<String> removed,
+                                        Collection<? extends IAirplane> airplanes, SharedBuffer.Pool pool) {
+        final boolean delta = type == Protocol.FRAME_AIRPLANE_DELTA;
+
+        final byte[][] removedIds = new byte[removed.size()][];
+        int size = 8 + (delta ? 4 : 0);
+
+        int i = 0;
+        for (String id : removed) {
+            removedIds[i] = Protocol.encode(id);
+            size += Protocol.sizeOf(removedIds[i++]);
+        }
+
+        final byte[][] ids = Airplane.encodeIds(airplanes);
+        size += Airplane.getListSize(ids);
+
+        final SharedBuffer frame = pool.acquire(Protocol.HEADER_SIZE + size);
+        final ByteBuffer buffer = frame.getBuffer();
+
+        Protocol.putHeader(buffer, type, size);
+        buffer.putLong(sequence);
+
+        if (delta) {
+            buffer.putInt(removedIds.length);
+            for (byte[] id : removedIds)
+                Protocol.putString(buffer, id);
+        }
+
+        Airplane.putList(buffer, ids, airplanes);
+        buffer.flip();
+        return frame;
+    }
+
+    /**
+     * @return the update carried by the message, null if it carries none
+     */
+    public static TrafficUpdate fromMessage(Message message) {
+        final boolean snapshot = RuntimeUtils.isFlagSet(message.Hint, Message.HINT_AIRPLANE_LIST);
+        if (!snapshot && !RuntimeUtils.isFlagSet(message.Hint, Message.HINT_AIRPLANE_DELTA))
+            return null;
+
+        final String data = message.Data != null ? message.Data : "";
+
+        final Matcher sequence = SequencePattern.matcher(data);
+        final List<String> removed = new ArrayList<>();
+
+        if (!snapshot) {
+            final Matcher m = RemovedPattern.matcher(data);
+            while (m.find())
+                removed.add(m.group(1));
+        }
+
+        return new TrafficUpdate(
+                sequence.lookingAt() ? Long.parseLong(sequence.group(1)) : -1,
+                snapshot,
+                removed,
+                Airplane.fromStringMultiple(data)
+        );
+    }
+
+    /**
+     * @return the update carried by the frame, null for another type of frame
+     */
+    public static TrafficUpdate fromFrame(int type, ByteBuffer payload) {
+        if (type == Protocol.FRAME_AIRPLANE_LIST)
+            return new TrafficUpdate(-1, true, Collections.emptyList(), Airplane.fromListFrame(payload));
+
+        if (type != Protocol.FRAME_AIRPLANE_SNAPSHOT && type != Protocol.FRAME_AIRPLANE_DELTA)
+            return null;
+
+        final long sequence = payload.getLong();
+        final List<String> removed = new ArrayList<>();
+
+        if (type == Protocol.FRAME_AIRPLANE_DELTA) {
+            final int count = payload.getInt();
+            for (int i = 0; i < count; i++)
+                removed.add(Protocol.getString(payload));
+        }
+
+        return new TrafficUpdate(sequence, type == Protocol.FRAME_AIRPLANE_SNAPSHOT, removed, Airplane.fromListFrame(payload));
+    }
+
+}
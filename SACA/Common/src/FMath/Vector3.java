@@ -11,6 +11,8 @@ import java.util.regex.Pattern;
  */
 public class Vector3 implements Serializable {
 
+    private static final Pattern RegexPattern = Pattern.compile("vec3::<(-?\\d+(?:\\.\\d+)?);(-?\\d+(?:\\.\\d+)?);(-?\\d+(?:\\.\\d+)?)>");
+
     public float X;
     public float Y;
     public float Z;
@@ -123,11 +125,18 @@ public class Vector3 implements Serializable {
     }
 
     public static float distance(Vector3 v1, Vector3 v2) {
-        return Vector3.subtract(v1, v2).getLength();
+        final float dx = v1.X - v2.X;
+        final float dy = v1.Y - v2.Y;
+        final float dz = v1.Z - v2.Z;
+
+        return (float)Math.sqrt(dx*dx + dy*dy + dz*dz);
     }
 
     public static float xyDistance(Vector3 v1, Vector3 v2) {
-        return Vector3.subtract(new Vector3(v1.X, v1.Y, 0.0f), new Vector3(v2.X, v2.Y, 0.0f)).getLength();
+        final float dx = v1.X - v2.X;
+        final float dy = v1.Y - v2.Y;
+
+        return (float)Math.sqrt(dx*dx + dy*dy);
     }
 
     public static float zDistance(Vector3 v1, Vector3 v2) {
@@ -135,8 +144,7 @@ public class Vector3 implements Serializable {
     }
 
     public static Vector3 fromString(String str) {
-        Pattern p = Pattern.compile("vec3::<(-?\\d+(?:\\.\\d+)?);(-?\\d+(?:\\.\\d+)?);(-?\\d+(?:\\.\\d+)?)>");
-        Matcher m = p.matcher(str);
+        Matcher m = RegexPattern.matcher(str);
         if (m.matches()) {
             return new Vector3(
                     Float.parseFloat(m.group(1)),
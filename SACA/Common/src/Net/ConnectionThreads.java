@@ -0,0 +1,84 @@
+package Net;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Factory of the threads running the blocking connections and listeners.
+ * Platform threads by default; virtual threads can be chosen on runtimes that have them (Java 21 and later),
+ * so that every connection no longer holds platform threads while keeping the blocking code.
+ */
+public class ConnectionThreads {
+
+    public static final int MODE_PLATFORM = 0;
+    public static final int MODE_VIRTUAL = 1;
+
+    private static final ThreadFactory PLATFORM_FACTORY = Thread::new;
+
+    private static volatile ThreadFactory s_Factory = PLATFORM_FACTORY;
+    private static volatile int s_Mode = MODE_PLATFORM;
+
+    private ConnectionThreads() {
+    }
+
+    /**
+     * Selects the kind of threads for the connections opened from then on.
+     * @return false if the runtime has no virtual threads, in which case the mode is left unchanged
+     */
+    public static boolean setMode(int mode) {
+        if (mode == MODE_VIRTUAL) {
+            final ThreadFactory factory = createVirtualFactory();
+            if (factory == null)
+                return false;
+
+            apply(factory, MODE_VIRTUAL);
+        }
+        else {
+            apply(PLATFORM_FACTORY, MODE_PLATFORM);
+        }
+
+        return true;
+    }
+
+    public static int getMode() {
+        return s_Mode;
+    }
+
+    public static boolean isVirtualSupported() {
+        return createVirtualFactory() != null;
+    }
+
+    /**
+     * Uses a custom factory for the connections opened from then on.
+     */
+    public static void setFactory(ThreadFactory factory) {
+        apply(factory != null ? factory : PLATFORM_FACTORY, MODE_PLATFORM);
+    }
+
+    private static synchronized void apply(ThreadFactory factory, int mode) {
+        s_Factory = factory;
+        s_Mode = mode;
+    }
+
+    static Thread newThread(Runnable runnable, String name) {
+        final Thread thread = s_Factory.newThread(runnable);
+        thread.setName(name);
+        return thread;
+    }
+
+    /**
+     * {@code Thread.ofVirtual().factory()}, looked up reflectively as the project targets Java 8.
+     */
+    private static ThreadFactory createVirtualFactory() {
+        try {
+            final Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            final Object builder = ofVirtual.invoke(null);
+            final Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        }
+        catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+}
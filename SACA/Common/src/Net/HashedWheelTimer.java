@@ -0,0 +1,191 @@
+package Net;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Timer running many coarse timeouts on a single thread: a wheel of buckets, one per tick, each holding the timeouts
+ * due when the wheel reaches it, possibly a number of rounds later. Scheduling and cancelling are constant time;
+ * a timeout expires up to one tick late.
+ * <p>
+ * Tasks run on the timer thread and must be short, e.g. queueing a message or closing a socket.
+ */
+public class HashedWheelTimer {
+
+    private final long m_TickNanos;
+    private final ArrayDeque<Timeout>[] m_Wheel;
+    private final int m_Mask;
+    private final String m_Name;
+
+    // scheduled from any thread, moved to the wheel by the timer thread
+    private final ConcurrentLinkedQueue<Timeout> m_Scheduled;
+
+    private Thread m_Thread;
+    private long m_StartTime;
+    private volatile boolean m_IsRunning;
+
+    /**
+     * @param tick duration of a tick in milliseconds
+     * @param wheelSize number of buckets, rounded up to a power of 2
+     */
+    @SuppressWarnings("unchecked")
+    public HashedWheelTimer(long tick, int wheelSize, String name) {
+        int size = 1;
+        while (size < wheelSize)
+            size <<= 1;
+
+        m_TickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(tick, 1));
+        m_Wheel = (ArrayDeque<Timeout>[]) new ArrayDeque<?>[size];
+        m_Mask = size - 1;
+        m_Name = name;
+
+        for (int i = 0; i < size; i++)
+            m_Wheel[i] = new ArrayDeque<>();
+
+        m_Scheduled = new ConcurrentLinkedQueue<>();
+        m_Thread = null;
+        m_IsRunning = false;
+    }
+
+    /**
+     * Runs the task once the delay elapsed, in milliseconds; the timer thread starts with the first timeout.
+     */
+    public Timeout schedule(Runnable task, long delay) {
+        if (!m_IsRunning)
+            start();
+
+        final Timeout timeout = new Timeout(task, System.nanoTime() - m_StartTime + TimeUnit.MILLISECONDS.toNanos(Math.max(delay, 0)));
+        m_Scheduled.add(timeout);
+        return timeout;
+    }
+
+    public synchronized void start() {
+        if (m_IsRunning)
+            return;
+
+        m_StartTime = System.nanoTime();
+        m_IsRunning = true;
+
+        // a service thread, the timer does not keep the application running
+        m_Thread = new Thread(this::run, m_Name);
+        m_Thread.setDaemon(true);
+        m_Thread.start();
+    }
+
+    /**
+     * Stops the timer thread; the timeouts not expired yet never run.
+     */
+    public synchronized void stop() {
+        if (!m_IsRunning)
+            return;
+
+        m_IsRunning = false;
+        m_Thread.interrupt();
+
+        try {
+            if (Thread.currentThread() != m_Thread)
+                m_Thread.join();
+        }
+        catch (InterruptedException ie) {
+            // do nothing
+        }
+    }
+
+    private void run() {
+        long tick = 0;
+
+        while (m_IsRunning) {
+            // sleeps until the end of the tick
+            final long deadline = (tick + 1) * m_TickNanos;
+            long sleep;
+            while ((sleep = deadline - (System.nanoTime() - m_StartTime)) > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleep);
+                }
+                catch (InterruptedException ie) {
+                    if (!m_IsRunning)
+                        return;
+                }
+            }
+
+            Timeout timeout;
+            while ((timeout = m_Scheduled.poll()) != null) {
+                if (timeout.isCancelled())
+                    continue;
+
+                // late ones go to the current bucket
+                final long due = Math.max(timeout.m_Deadline / m_TickNanos, tick);
+                timeout.m_Rounds = (due - tick) / m_Wheel.length;
+                m_Wheel[(int) (due & m_Mask)].add(timeout);
+            }
+
+            final ArrayDeque<Timeout> bucket = m_Wheel[(int) (tick & m_Mask)];
+            for (int i = bucket.size(); i > 0; i--) {
+                timeout = bucket.poll();
+
+                if (timeout.isCancelled())
+                    continue;
+
+                if (timeout.m_Rounds > 0) {
+                    timeout.m_Rounds--;
+                    bucket.add(timeout);
+                    continue;
+                }
+
+                timeout.expire();
+            }
+
+            tick++;
+        }
+    }
+
+    public static class Timeout {
+
+        private static final int STATE_SCHEDULED = 0;
+        private static final int STATE_CANCELLED = 1;
+        private static final int STATE_EXPIRED   = 2;
+
+        private final Runnable m_Task;
+        private final long m_Deadline; // nanoseconds since the start of the timer
+        private long m_Rounds;
+        private final AtomicInteger m_State;
+
+        private Timeout(Runnable task, long deadline) {
+            m_Task = task;
+            m_Deadline = deadline;
+            m_Rounds = 0;
+            m_State = new AtomicInteger(STATE_SCHEDULED);
+        }
+
+        /**
+         * @return false if the task already ran
+         */
+        public boolean cancel() {
+            return m_State.compareAndSet(STATE_SCHEDULED, STATE_CANCELLED);
+        }
+
+        public boolean isCancelled() {
+            return m_State.get() == STATE_CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return m_State.get() == STATE_EXPIRED;
+        }
+
+        private void expire() {
+            if (!m_State.compareAndSet(STATE_SCHEDULED, STATE_EXPIRED))
+                return;
+
+            try {
+                m_Task.run();
+            }
+            catch (Throwable t) {
+                t.printStackTrace();
+            }
+        }
+
+    }
+
+}
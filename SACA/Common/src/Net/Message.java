@@ -2,6 +2,7 @@ package Net;
 
 import Utils.StringUtils;
 
+import java.nio.ByteBuffer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -14,6 +15,9 @@ public class Message {
     public static final int HINT_LOCK_ACK = 1 << 4;
     public static final int HINT_RELEASE_ACK = 1 << 5;
     public static final int HINT_AIRPLANE_LIST = 1 << 10;
+    public static final int HINT_AIRPLANE_DELTA = 1 << 11;
+    public static final int HINT_RESYNC = 1 << 12;
+    public static final int HINT_SUBSCRIBE = 1 << 13; // data is a region, or nothing for the whole traffic
 
     public int Hint;
     public String Data;
@@ -45,6 +49,34 @@ public class Message {
         );
     }
 
+    /**
+     * Binary protocol frame: {@code [hint: int][from: string][to: string][data: string]}.
+     */
+    public ByteBuffer toFrame() {
+        final byte[] from = Protocol.encode(From);
+        final byte[] to = Protocol.encode(To);
+        final byte[] data = Protocol.encode(Data);
+
+        final ByteBuffer frame = Protocol.allocate(Protocol.FRAME_MESSAGE,
+                4 + Protocol.sizeOf(from) + Protocol.sizeOf(to) + Protocol.sizeOf(data));
+
+        frame.putInt(Hint);
+        Protocol.putString(frame, from);
+        Protocol.putString(frame, to);
+        Protocol.putString(frame, data);
+        frame.flip();
+        return frame;
+    }
+
+    public static Message fromFrame(ByteBuffer payload) {
+        final int hint = payload.getInt();
+        final String from = Protocol.getString(payload);
+        final String to = Protocol.getString(payload);
+        final String data = Protocol.getString(payload);
+
+        return new Message(hint, data, from, to);
+    }
+
     public static boolean isMessage(String str) {
         return !StringUtils.isNullOrWhitespace(str) &&
                 Pattern.compile("^msg::<(\\d+);([^;]*);([^;]*);([^;]*)>$").matcher(str).matches();
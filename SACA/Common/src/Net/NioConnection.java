@@ -0,0 +1,180 @@
+package Net;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Connection served by an I/O thread of a {@link NioReactor}, with the same protocols, pings and read timeout
+ * as the stream threads of {@link TcpConnection}. Messages are received and written on the I/O thread.
+ */
+class NioConnection extends TcpConnection {
+
+    private final SocketChannel m_Channel;
+    private final NioReactor.Loop m_Loop;
+    private final int m_Timeout;
+    private SelectionKey m_Key;
+
+    // message being written by the I/O thread, taken out of the queue
+    private Object m_Current;
+    private ByteBuffer m_CurrentBytes;
+    private final AtomicBoolean m_FlushRequested;
+
+    private final AtomicBoolean m_IsClosed;
+
+    NioConnection(SocketChannel channel, NioReactor reactor, int timeout) throws IOException {
+        m_Channel = channel;
+        m_Channel.configureBlocking(false);
+        m_Loop = reactor.next();
+        m_Timeout = timeout;
+        m_Key = null;
+
+        m_Current = null;
+        m_CurrentBytes = null;
+        m_FlushRequested = new AtomicBoolean(false);
+
+        m_IsClosed = new AtomicBoolean(false);
+    }
+
+    /**
+     * Starts serving the connection; events are dispatched from then on.
+     */
+    void open() {
+        m_Loop.register(this);
+        startTimers(m_Timeout);
+    }
+
+    SocketChannel getChannel() {
+        return m_Channel;
+    }
+
+    void setKey(SelectionKey key) {
+        m_Key = key;
+
+        // messages sent before the registration
+        if (getQueueDepth() > 0 && m_FlushRequested.compareAndSet(false, true))
+            flush();
+    }
+
+    @Override
+    protected boolean isClosed() {
+        return m_IsClosed.get();
+    }
+
+    @Override
+    protected void onQueued() {
+        requestFlush();
+    }
+
+    @Override
+    protected void abort() {
+        // the close is dispatched on the I/O thread, not to the sender
+        m_Loop.execute(this::close);
+    }
+
+    private void requestFlush() {
+        // one flush request at a time, the flush takes every queued message
+        if (m_FlushRequested.compareAndSet(false, true))
+            m_Loop.execute(this::flush);
+    }
+
+    @Override
+    public void close() {
+        if (!m_IsClosed.compareAndSet(false, true))
+            return;
+
+        try {
+            m_Channel.close();
+        }
+        catch (IOException e) {
+            // do nothing
+        }
+
+        stopTimers();
+        clearQueue();
+
+        // the message being written belongs to the I/O thread
+        m_Loop.execute(this::releaseCurrent);
+
+        dispatchClose();
+    }
+
+    /**
+     * Writes the queued messages until the socket buffer is full; called on the I/O thread.
+     */
+    void flush() {
+        if (m_IsClosed.get())
+            return;
+
+        // not registered yet, the registration flushes
+        if (m_Key == null) {
+            m_FlushRequested.set(false);
+            return;
+        }
+
+        try {
+            while (true) {
+                while (m_Current != null || takeCurrent()) {
+                    m_Channel.write(m_CurrentBytes);
+
+                    // resume once the socket can take more
+                    if (m_CurrentBytes.hasRemaining()) {
+                        m_Key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                        return;
+                    }
+
+                    releaseCurrent();
+                }
+
+                m_Key.interestOps(SelectionKey.OP_READ);
+                m_FlushRequested.set(false);
+
+                // a message queued after the last take did not request a flush
+                if (getQueueDepth() == 0 || !m_FlushRequested.compareAndSet(false, true))
+                    return;
+            }
+        }
+        catch (IOException e) {
+            close();
+        }
+    }
+
+    private boolean takeCurrent() {
+        final Object item = takeMessage();
+        if (item == null)
+            return false;
+
+        m_Current = item;
+        m_CurrentBytes = encode(item);
+        return true;
+    }
+
+    private void releaseCurrent() {
+        SendQueue.release(m_Current);
+        m_Current = null;
+        m_CurrentBytes = null;
+    }
+
+    /**
+     * Reads what is available and dispatches every complete line or frame; called on the I/O thread.
+     */
+    void onReadable(ByteBuffer buffer) {
+        try {
+            buffer.clear();
+            final int count = m_Channel.read(buffer);
+
+            if (count < 0) {
+                close();
+                return;
+            }
+
+            receive(buffer.array(), count);
+        }
+        catch (IOException e) {
+            close();
+        }
+    }
+
+}
@@ -0,0 +1,201 @@
+package Net;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Small fixed pool of I/O threads, each multiplexing its share of the connections over a selector.
+ * Listeners given a reactor accept their connections as {@link NioConnection}s, which need no thread of their own.
+ */
+public class NioReactor {
+
+    private static final int READ_BUFFER_SIZE = 8192;
+
+    private final Loop[] m_Loops;
+    private int m_Next;
+    private volatile boolean m_IsRunning;
+
+    public NioReactor(int threads) {
+        m_Loops = new Loop[Math.max(threads, 1)];
+        m_Next = 0;
+        m_IsRunning = false;
+    }
+
+    public synchronized void start() throws IOException {
+        if (m_IsRunning)
+            return;
+
+        for (int i = 0; i < m_Loops.length; i++)
+            m_Loops[i] = new Loop(i);
+
+        m_IsRunning = true;
+
+        for (Loop loop : m_Loops)
+            loop.m_Thread.start();
+    }
+
+    public synchronized void stop() {
+        if (!m_IsRunning)
+            return;
+
+        m_IsRunning = false;
+
+        for (Loop loop : m_Loops) {
+            loop.m_Selector.wakeup();
+
+            try {
+                if (Thread.currentThread() != loop.m_Thread)
+                    loop.m_Thread.join();
+            }
+            catch (InterruptedException ie) {
+                // do nothing
+            }
+        }
+    }
+
+    public boolean isRunning() {
+        return m_IsRunning;
+    }
+
+    /**
+     * Accepts the connections of the server channel on the first I/O thread.
+     */
+    void listen(ServerSocketChannel server, TcpListener listener) {
+        final Loop loop = m_Loops[0];
+        loop.execute(() -> {
+            try {
+                server.register(loop.m_Selector, SelectionKey.OP_ACCEPT, listener);
+            }
+            catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     * I/O thread for a new connection, in turn.
+     */
+    synchronized Loop next() {
+        final Loop loop = m_Loops[m_Next];
+        m_Next = (m_Next + 1) % m_Loops.length;
+        return loop;
+    }
+
+    class Loop implements Runnable {
+
+        private final Selector m_Selector;
+        private final Thread m_Thread;
+        private final ConcurrentLinkedQueue<Runnable> m_Tasks;
+        private final ByteBuffer m_ReadBuffer;
+
+        private Loop(int index) throws IOException {
+            m_Selector = Selector.open();
+            m_Thread = new Thread(this, "Tcp Connection I/O " + index);
+            m_Tasks = new ConcurrentLinkedQueue<>();
+            m_ReadBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        }
+
+        /**
+         * Runs the task on this I/O thread.
+         */
+        void execute(Runnable task) {
+            m_Tasks.add(task);
+            m_Selector.wakeup();
+        }
+
+        void register(NioConnection connection) {
+            execute(() -> {
+                try {
+                    connection.setKey(connection.getChannel().register(m_Selector, SelectionKey.OP_READ, connection));
+                }
+                catch (IOException e) {
+                    connection.close();
+                }
+            });
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (m_IsRunning) {
+                    m_Selector.select();
+
+                    Runnable task;
+                    while ((task = m_Tasks.poll()) != null) {
+                        try {
+                            task.run();
+                        }
+                        catch (RuntimeException e) {
+                            e.printStackTrace();
+                        }
+                    }
+
+                    final Iterator<SelectionKey> keys = m_Selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        final SelectionKey key = keys.next();
+                        keys.remove();
+
+                        if (key.isValid())
+                            handle(key);
+                    }
+                }
+            }
+            catch (IOException e) {
+                e.printStackTrace();
+            }
+            finally {
+                for (SelectionKey key : m_Selector.keys()) {
+                    if (key.attachment() instanceof NioConnection)
+                        ((NioConnection) key.attachment()).close();
+                }
+
+                try {
+                    m_Selector.close();
+                }
+                catch (IOException e) {
+                    // do nothing
+                }
+            }
+        }
+
+        private void handle(SelectionKey key) {
+            if (key.isAcceptable()) {
+                final TcpListener listener = (TcpListener) key.attachment();
+
+                try {
+                    final SocketChannel channel = ((ServerSocketChannel) key.channel()).accept();
+                    if (channel != null)
+                        listener.accept(channel);
+                }
+                catch (IOException e) {
+                    // do nothing; the client is gone
+                }
+                catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+
+                return;
+            }
+
+            final NioConnection connection = (NioConnection) key.attachment();
+
+            // a handler failing on what one peer sent costs that connection alone, not the others of this thread
+            try {
+                if (key.isReadable())
+                    connection.onReadable(m_ReadBuffer);
+
+                if (key.isValid() && key.isWritable())
+                    connection.flush();
+            }
+            catch (RuntimeException e) {
+                e.printStackTrace();
+                connection.close();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,122 @@
+package Net;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Wire protocols of a {@link TcpConnection}.
+ * <p>
+ * Connections start with the text protocol, one message per line. A client may then send the line
+ * {@code proto::<1>} to propose the binary protocol; the other end answers with the protocol it chose, in the same form,
+ * and the client confirms it with the same line once more, unless it stopped waiting for the answer. Each direction
+ * switches right after the hello that chose the protocol in that direction, the answer or the confirmation, and from
+ * then on carries length-prefixed frames: {@code [length: int][type: byte][payload]}, the length counting the type and
+ * the payload. Text messages are still exchanged as {@link #FRAME_TEXT} frames.
+ */
+public class Protocol {
+
+    public static final int TEXT   = 0;
+    public static final int BINARY = 1;
+
+    // frame types
+    public static final int FRAME_TEXT              = 0; // [text: string]
+    public static final int FRAME_AIRPLANE          = 1; // an airplane state, see Airplane.writeTo
+    public static final int FRAME_MESSAGE           = 2; // see Message.writeTo
+    public static final int FRAME_AIRPLANE_LIST     = 3; // [count: int] followed by the airplane states
+    public static final int FRAME_AIRPLANE_SNAPSHOT = 4; // [sequence: long] followed by an airplane list
+    public static final int FRAME_AIRPLANE_DELTA    = 5; // [sequence: long][count: int][removed ids: string] followed by an airplane list
+
+    public static final int HEADER_SIZE = 5;
+    public static final int MAX_FRAME_SIZE = 16 * 1024 * 1024;
+
+    // strings in frames, null written as a length of -1
+    public static final Charset CHARSET = StandardCharsets.UTF_8;
+
+    private static final String HELLO_PREFIX = "proto::<";
+    private static final String HELLO_SUFFIX = ">";
+
+    private Protocol() {
+    }
+
+    public static boolean isSupported(int protocol) {
+        return protocol == TEXT || protocol == BINARY;
+    }
+
+    static String hello(int protocol) {
+        return HELLO_PREFIX + protocol + HELLO_SUFFIX;
+    }
+
+    /**
+     * @return the protocol of a hello line, -1 if the line is not one
+     */
+    static int parseHello(String line) {
+        if (!line.startsWith(HELLO_PREFIX) || !line.endsWith(HELLO_SUFFIX))
+            return -1;
+
+        try {
+            return Integer.parseInt(line.substring(HELLO_PREFIX.length(), line.length() - HELLO_SUFFIX.length()));
+        }
+        catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Buffer for a frame of the given payload size, with its header written; flip it once the payload is written.
+     */
+    public static ByteBuffer allocate(int type, int payloadSize) {
+        final ByteBuffer frame = ByteBuffer.allocate(HEADER_SIZE + payloadSize);
+        putHeader(frame, type, payloadSize);
+        return frame;
+    }
+
+    public static void putHeader(ByteBuffer frame, int type, int payloadSize) {
+        frame.putInt(1 + payloadSize).put((byte) type);
+    }
+
+    public static ByteBuffer textFrame(String text) {
+        final byte[] bytes = encode(text);
+        final ByteBuffer frame = allocate(FRAME_TEXT, sizeOf(bytes));
+        putString(frame, bytes);
+        frame.flip();
+        return frame;
+    }
+
+    public static byte[] encode(String str) {
+        return str != null ? str.getBytes(CHARSET) : null;
+    }
+
+    /**
+     * Bytes taken by an encoded string in a frame.
+     */
+    public static int sizeOf(byte[] str) {
+        return 4 + (str != null ? str.length : 0);
+    }
+
+    public static void putString(ByteBuffer frame, byte[] str) {
+        if (str == null) {
+            frame.putInt(-1);
+            return;
+        }
+
+        frame.putInt(str.length).put(str);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the length of the string does not fit in the rest of the payload
+     */
+    public static String getString(ByteBuffer payload) {
+        final int length = payload.getInt();
+        if (length == -1)
+            return null;
+
+        if (length < 0 || length > payload.remaining())
+            throw new IllegalArgumentException("Invalid string length: " + length + ", " + payload.remaining() + " bytes left");
+
+        final String str = new String(payload.array(), payload.arrayOffset() + payload.position(), length, CHARSET);
+        payload.position(payload.position() + length);
+        return str;
+    }
+
+}
@@ -0,0 +1,181 @@
+package Net;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+
+/**
+ * Messages waiting to be written by a connection: strings, frames, shared buffers and protocol hellos.
+ * <p>
+ * A message sent with a key replaces the one queued with the same key, keeping its place, so that a stale state is never
+ * written. Beyond the limit, the oldest message is dropped or the connection is to be closed.
+ * Not thread safe, the connection guards it.
+ */
+class SendQueue {
+
+    private final ArrayDeque<Entry> m_Entries;
+    private final HashMap<Object, Entry> m_Keyed;
+
+    private int m_Limit;
+    private int m_Overflow;
+    private boolean m_HasOverflowed;
+
+    private int m_MaxDepth;
+    private long m_DroppedCount;
+    private long m_CoalescedCount;
+
+    SendQueue() {
+        m_Entries = new ArrayDeque<>();
+        m_Keyed = new HashMap<>();
+
+        m_Limit = 0;
+        m_Overflow = TcpConnection.OVERFLOW_DROP_OLDEST;
+        m_HasOverflowed = false;
+
+        m_MaxDepth = 0;
+        m_DroppedCount = 0;
+        m_CoalescedCount = 0;
+    }
+
+    void setLimit(int limit, int overflow) {
+        m_Limit = Math.max(limit, 0);
+        m_Overflow = overflow;
+    }
+
+    /**
+     * @return false if the queue is full and the connection is to be closed, the message is then released
+     */
+    boolean add(Object item, Object key) {
+        if (key != null) {
+            final Entry queued = m_Keyed.get(key);
+            if (queued != null) {
+                release(queued.m_Item);
+                queued.m_Item = item;
+                m_CoalescedCount++;
+                return true;
+            }
+        }
+
+        if (m_Limit > 0 && m_Entries.size() >= m_Limit) {
+            if (m_Overflow == TcpConnection.OVERFLOW_DISCONNECT) {
+                if (!m_HasOverflowed)
+                    System.err.println("Send queue full (" + m_Limit + " messages), closing the connection");
+
+                m_HasOverflowed = true;
+                release(item);
+                return false;
+            }
+
+            if (!m_HasOverflowed)
+                System.err.println("Send queue full (" + m_Limit + " messages), dropping the oldest ones");
+
+            m_HasOverflowed = true;
+            dropOldest();
+        }
+
+        final Entry entry = new Entry(item, key, false);
+        m_Entries.add(entry);
+
+        if (key != null)
+            m_Keyed.put(key, entry);
+
+        m_MaxDepth = Math.max(m_MaxDepth, m_Entries.size());
+        return true;
+    }
+
+    /**
+     * Protocol hello, never dropped; the messages queued after it do not replace those before, written with another protocol.
+     */
+    void addControl(Object item) {
+        m_Keyed.clear();
+        m_Entries.add(new Entry(item, null, true));
+        m_MaxDepth = Math.max(m_MaxDepth, m_Entries.size());
+    }
+
+    /**
+     * @return the oldest message, no longer replaceable, null if none
+     */
+    Object poll() {
+        final Entry entry = m_Entries.poll();
+        if (entry == null)
+            return null;
+
+        if (entry.m_Key != null)
+            m_Keyed.remove(entry.m_Key, entry);
+
+        return entry.m_Item;
+    }
+
+    boolean contains(Object key) {
+        return m_Keyed.containsKey(key);
+    }
+
+    boolean isEmpty() {
+        return m_Entries.isEmpty();
+    }
+
+    int size() {
+        return m_Entries.size();
+    }
+
+    int getMaxDepth() {
+        return m_MaxDepth;
+    }
+
+    long getDroppedCount() {
+        return m_DroppedCount;
+    }
+
+    long getCoalescedCount() {
+        return m_CoalescedCount;
+    }
+
+    /**
+     * Drops every message, releasing the shared buffers.
+     */
+    void clear() {
+        for (Entry entry : m_Entries)
+            release(entry.m_Item);
+
+        m_Entries.clear();
+        m_Keyed.clear();
+    }
+
+    private void dropOldest() {
+        final Iterator<Entry> it = m_Entries.iterator();
+        while (it.hasNext()) {
+            final Entry entry = it.next();
+            if (entry.m_IsControl)
+                continue;
+
+            it.remove();
+
+            if (entry.m_Key != null)
+                m_Keyed.remove(entry.m_Key, entry);
+
+            release(entry.m_Item);
+            m_DroppedCount++;
+            return;
+        }
+    }
+
+    static void release(Object item) {
+        if (item instanceof SharedBuffer)
+            ((SharedBuffer) item).release();
+    }
+
+    private static class Entry {
+
+        private Object m_Item;
+        private final Object m_Key;
+        private final boolean m_IsControl;
+
+        private Entry(Object item, Object key, boolean isControl) {
+            m_Item = item;
+            m_Key = key;
+            m_IsControl = isControl;
+        }
+
+    }
+
+}
@@ -0,0 +1,103 @@
+package Net;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Encoded message sent to several connections without copies. Every connection holds a reference until
+ * the message is written; the last release returns the buffer to its pool.
+ */
+public class SharedBuffer {
+
+    private final Pool m_Pool;
+    private final ByteBuffer m_Buffer;
+    private final AtomicInteger m_References;
+
+    private SharedBuffer(Pool pool, int capacity) {
+        m_Pool = pool;
+        m_Buffer = ByteBuffer.allocate(capacity);
+        m_References = new AtomicInteger(0);
+    }
+
+    /**
+     * The encoded bytes, between position and limit; not to be modified once sent.
+     */
+    public ByteBuffer getBuffer() {
+        return m_Buffer;
+    }
+
+    public SharedBuffer retain() {
+        m_References.incrementAndGet();
+        return this;
+    }
+
+    public void release() {
+        final int references = m_References.decrementAndGet();
+
+        if (references == 0)
+            m_Pool.recycle(this);
+        else if (references < 0)
+            throw new IllegalStateException("Buffer released more than retained");
+    }
+
+    /**
+     * Buffers of a producer, reused once released; a few of them usually suffice as messages are written quickly.
+     */
+    public static class Pool {
+
+        private static final int MAX_FREE = 4;
+
+        private final ConcurrentLinkedQueue<SharedBuffer> m_Free;
+        private final AtomicInteger m_FreeCount;
+        private final AtomicLong m_Allocations;
+
+        public Pool() {
+            m_Free = new ConcurrentLinkedQueue<>();
+            m_FreeCount = new AtomicInteger(0);
+            m_Allocations = new AtomicLong(0);
+        }
+
+        /**
+         * Cleared buffer of at least the given capacity, referenced once by the caller.
+         */
+        public SharedBuffer acquire(int capacity) {
+            SharedBuffer buffer;
+            while ((buffer = m_Free.poll()) != null) {
+                m_FreeCount.decrementAndGet();
+
+                // too small ones are dropped, the messages only grow with the traffic
+                if (buffer.m_Buffer.capacity() >= capacity)
+                    break;
+            }
+
+            if (buffer == null) {
+                buffer = new SharedBuffer(this, capacity + capacity / 4);
+                m_Allocations.incrementAndGet();
+            }
+
+            buffer.m_Buffer.clear();
+            buffer.m_References.set(1);
+            return buffer;
+        }
+
+        /**
+         * Buffers allocated so far, as opposed to reused.
+         */
+        public long getAllocations() {
+            return m_Allocations.get();
+        }
+
+        private void recycle(SharedBuffer buffer) {
+            if (m_FreeCount.incrementAndGet() > MAX_FREE) {
+                m_FreeCount.decrementAndGet();
+                return;
+            }
+
+            m_Free.add(buffer);
+        }
+
+    }
+
+}
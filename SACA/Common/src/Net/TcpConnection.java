@@ -5,11 +5,19 @@ import Utils.StringUtils;
 import java.io.*;
 import java.net.Socket;
 import java.net.SocketException;
-import java.net.SocketTimeoutException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Observable;
 import java.util.Set;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Created by Mike on 7/10/2017.
@@ -17,30 +25,80 @@ import java.util.Set;
 public class TcpConnection extends Observable {
 
     private static final int SOCKET_TIMEOUT = 10000;
+    private static final int READ_BUFFER_SIZE = 8192;
+    private static final int INITIAL_LINE_SIZE = 256;
+    private static final long ANSWER_TIMEOUT = 5000; // ms, then the other end is taken as not negotiating
+    private static final long PING_INTERVAL = 5000; // ms without writing anything before a ping
+
+    // heartbeats and idle timeouts of every connection, on a single thread
+    private static final HashedWheelTimer TIMER = new HashedWheelTimer(100, 512, "Tcp Connection Timer");
+
+    // overflow policies of a bounded send queue
+    public static final int OVERFLOW_DROP_OLDEST = 0;
+    public static final int OVERFLOW_DISCONNECT  = 1;
+
+    // a ping replaces the one not written yet
+    protected static final Object PING_KEY = new Object();
+
+    // text protocol lines, as the stream reader and writer used to
+    protected static final Charset LINE_CHARSET = Charset.defaultCharset();
+    protected static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(LINE_CHARSET);
 
     private Socket m_Socket;
-    private final ReaderThread m_ReadThread;
-    private final WriterThread m_WriteThread;
-    private final PingThread m_PingThread;
-    private final ArrayList<String> m_MessageQueue;
+    private final Thread m_ReadThread;
+    private final Thread m_WriteThread;
+    private final SendQueue m_MessageQueue;
     private final Set<EventHandler> m_EventHandlers;
 
-    private final Object m_Mutex = new Object();
+    // not a monitor, a virtual thread waiting on a lock does not pin its carrier
+    private final ReentrantLock m_Mutex = new ReentrantLock();
+    private final Condition m_QueueNotEmpty = m_Mutex.newCondition();
+
+    // protocol of the messages sent from now on; the writer switches when it reaches the hello
+    private volatile int m_Protocol;
+    private volatile int m_WriteProtocol;
+    private volatile boolean m_AwaitingAnswer;
+    private long m_AnswerDeadline;
+
+    // a proposal was written and its answer not read yet, even past the timeout
+    private volatile boolean m_HasProposed;
+
+    // closed once nothing was read for the timeout, pinged once nothing was written for the ping interval
+    private int m_Timeout;
+    private volatile long m_LastRead;
+    private volatile long m_LastWrite;
+    private volatile HashedWheelTimer.Timeout m_IdleTimeout;
+    private volatile HashedWheelTimer.Timeout m_Heartbeat;
+
+    // incoming lines or frames, parsed by the reading thread; -1 unless a proposal was answered and not confirmed yet
+    private int m_ReadProtocol;
+    private int m_AnsweredProtocol;
+    private byte[] m_Line;
+    private int m_LineLength;
 
     public TcpConnection(Socket socket, int timeout) throws IOException {
         m_Socket = socket;
-        m_Socket.setSoTimeout(timeout);
 
-        m_MessageQueue = new ArrayList<>(10);
+        m_MessageQueue = new SendQueue();
         m_EventHandlers = new HashSet<>(5);
 
-        m_ReadThread = new ReaderThread(m_Socket.getInputStream());
-        m_WriteThread = new WriterThread(m_Socket.getOutputStream());
-        m_PingThread = new PingThread();
+        m_Protocol = Protocol.TEXT;
+        m_WriteProtocol = Protocol.TEXT;
+        m_AwaitingAnswer = false;
+        m_HasProposed = false;
+
+        m_ReadProtocol = Protocol.TEXT;
+        m_AnsweredProtocol = -1;
+        m_Line = new byte[INITIAL_LINE_SIZE];
+        m_LineLength = 0;
+
+        m_ReadThread = ConnectionThreads.newThread(new StreamReader(m_Socket.getInputStream()), "Tcp Connection Stream Reader");
+        m_WriteThread = ConnectionThreads.newThread(new StreamWriter(m_Socket.getOutputStream()), "Tcp Connection Stream Writer");
 
         m_ReadThread.start();
         m_WriteThread.start();
-        m_PingThread.start();
+
+        startTimers(timeout);
     }
 
     public TcpConnection(Socket socket) throws IOException {
@@ -55,6 +113,29 @@ public class TcpConnection extends Observable {
         this(new Socket(host, port));
     }
 
+    /**
+     * For transports that do not run the stream threads; they feed the received bytes to {@link #receive(byte[], int)}
+     * and dispatch the close through {@link #dispatchClose()}.
+     */
+    protected TcpConnection() {
+        m_Socket = null;
+        m_MessageQueue = new SendQueue();
+        m_EventHandlers = new HashSet<>(5);
+
+        m_Protocol = Protocol.TEXT;
+        m_WriteProtocol = Protocol.TEXT;
+        m_AwaitingAnswer = false;
+        m_HasProposed = false;
+
+        m_ReadProtocol = Protocol.TEXT;
+        m_AnsweredProtocol = -1;
+        m_Line = new byte[INITIAL_LINE_SIZE];
+        m_LineLength = 0;
+
+        m_ReadThread = null;
+        m_WriteThread = null;
+    }
+
     public void addEventHandler(EventHandler handler) {
         m_EventHandlers.add(handler);
     }
@@ -63,28 +144,225 @@ public class TcpConnection extends Observable {
         m_EventHandlers.remove(handler);
     }
 
+    public int getProtocol() {
+        return m_Protocol;
+    }
+
+    public boolean isBinary() {
+        return m_Protocol == Protocol.BINARY;
+    }
+
+    /**
+     * Proposes a protocol to the other end. Messages sent meanwhile are held until it answers, or a few seconds if it does not,
+     * then written with the protocol it chose; see {@link Protocol}.
+     */
+    public void requestProtocol(int protocol) {
+        if (!Protocol.isSupported(protocol) || protocol == m_Protocol)
+            return;
+
+        m_Mutex.lock();
+        try {
+            m_MessageQueue.addControl(new Hello(protocol, true));
+            m_QueueNotEmpty.signal();
+        }
+        finally {
+            m_Mutex.unlock();
+        }
+
+        onQueued();
+    }
+
+    /**
+     * Bounds the messages waiting to be written, 0 for no limit. Beyond the limit, the oldest message is dropped
+     * or the connection is closed, see {@link #OVERFLOW_DROP_OLDEST} and {@link #OVERFLOW_DISCONNECT}.
+     */
+    public void setQueueLimit(int limit, int overflow) {
+        m_Mutex.lock();
+        try {
+            m_MessageQueue.setLimit(limit, overflow);
+        }
+        finally {
+            m_Mutex.unlock();
+        }
+    }
+
+    /**
+     * Messages waiting to be written; a slow consumer keeps it high.
+     */
+    public int getQueueDepth() {
+        m_Mutex.lock();
+        try {
+            return m_MessageQueue.size();
+        }
+        finally {
+            m_Mutex.unlock();
+        }
+    }
+
+    /**
+     * Highest number of messages waiting to be written since the connection opened.
+     */
+    public int getMaxQueueDepth() {
+        m_Mutex.lock();
+        try {
+            return m_MessageQueue.getMaxDepth();
+        }
+        finally {
+            m_Mutex.unlock();
+        }
+    }
+
+    /**
+     * Messages dropped as the queue was full.
+     */
+    public long getDroppedCount() {
+        m_Mutex.lock();
+        try {
+            return m_MessageQueue.getDroppedCount();
+        }
+        finally {
+            m_Mutex.unlock();
+        }
+    }
+
+    /**
+     * Messages replaced by a newer one with the same key before being written.
+     */
+    public long getCoalescedCount() {
+        m_Mutex.lock();
+        try {
+            return m_MessageQueue.getCoalescedCount();
+        }
+        finally {
+            m_Mutex.unlock();
+        }
+    }
+
+    /**
+     * Whether the message sent with the key is still waiting to be written, and would be replaced by the next one.
+     */
+    public boolean isQueued(Object key) {
+        m_Mutex.lock();
+        try {
+            return m_MessageQueue.contains(key);
+        }
+        finally {
+            m_Mutex.unlock();
+        }
+    }
+
     public void send(String message) {
-        synchronized (m_Mutex) {
-            m_MessageQueue.add(message);
-            m_Mutex.notify();
+        send(message, null);
+    }
+
+    /**
+     * Sends a message that replaces the one sent with the same key if it is not written yet, e.g. the latest state
+     * of an airplane; the keys are compared with {@code equals}.
+     */
+    public void send(String message, Object key) {
+        enqueue(message, key);
+    }
+
+    /**
+     * Sends a frame built with {@link Protocol#allocate(int, int)}; the binary protocol must be in use.
+     * The frame is not modified, so the same one may be sent to several connections.
+     */
+    public void sendFrame(ByteBuffer frame) {
+        sendFrame(frame, null);
+    }
+
+    /**
+     * Sends a frame that replaces the one sent with the same key if it is not written yet, see {@link #send(String, Object)}.
+     */
+    public void sendFrame(ByteBuffer frame, Object key) {
+        if (!isBinary())
+            throw new IllegalStateException("Binary protocol not in use");
+
+        enqueue(frame, key);
+    }
+
+    public void send(Message message) {
+        if (isBinary())
+            sendFrame(message.toFrame());
+        else
+            send(message.toString());
+    }
+
+    /**
+     * Sends an encoded message shared with other connections: a line from {@link #encodeLine(String, SharedBuffer.Pool)}
+     * with the text protocol, a frame with the binary one. The connection holds a reference until it is written.
+     */
+    public void send(SharedBuffer buffer) {
+        send(buffer, null);
+    }
+
+    /**
+     * Sends a shared message that replaces the one sent with the same key if it is not written yet,
+     * see {@link #send(String, Object)}.
+     */
+    public void send(SharedBuffer buffer, Object key) {
+        enqueue(buffer.retain(), key);
+    }
+
+    private void enqueue(Object item, Object key) {
+        final boolean accepted;
+
+        m_Mutex.lock();
+        try {
+            if (isClosed()) {
+                SendQueue.release(item);
+                return;
+            }
+
+            accepted = m_MessageQueue.add(item, key);
+            m_QueueNotEmpty.signal();
         }
+        finally {
+            m_Mutex.unlock();
+        }
+
+        if (accepted)
+            onQueued();
+        else
+            abort();
+    }
+
+    /**
+     * Text protocol line of the message in a buffer of the pool, for sending to several connections.
+     */
+    public static SharedBuffer encodeLine(String message, SharedBuffer.Pool pool) {
+        final CharsetEncoder encoder = LINE_CHARSET.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        final SharedBuffer line = pool.acquire((int) (message.length() * encoder.maxBytesPerChar()) + LINE_SEPARATOR.length);
+        final ByteBuffer buffer = line.getBuffer();
+
+        encoder.encode(CharBuffer.wrap(message), buffer, true);
+        encoder.flush(buffer);
+        buffer.put(LINE_SEPARATOR).flip();
+        return line;
     }
 
     public void close() {
         try {
             if (m_Socket == null) return;
 
-            synchronized (m_Mutex) {
+            m_Mutex.lock();
+            try {
                 m_Socket.close();
                 m_Socket = null;
-                m_Mutex.notify();
+                m_QueueNotEmpty.signal();
+            }
+            finally {
+                m_Mutex.unlock();
             }
 
+            stopTimers();
+
             if (Thread.currentThread() != m_ReadThread) {
                 m_ReadThread.join();
                 m_WriteThread.join();
-                m_PingThread.interrupt();
-                m_PingThread.join();
             }
         }
         catch (Exception e) {
@@ -92,33 +370,379 @@ public class TcpConnection extends Observable {
         }
     }
 
+    protected boolean isClosed() {
+        return m_Socket == null || m_Socket.isClosed();
+    }
+
+    /**
+     * Schedules the heartbeats and, unless the timeout is 0, the idle timeout on the shared timer.
+     */
+    protected void startTimers(int timeout) {
+        m_Timeout = timeout;
+        m_LastRead = now();
+        m_LastWrite = m_LastRead;
+
+        if (timeout > 0)
+            m_IdleTimeout = TIMER.schedule(this::checkIdle, timeout);
+
+        m_Heartbeat = TIMER.schedule(this::heartbeat, PING_INTERVAL);
+    }
+
+    protected void stopTimers() {
+        final HashedWheelTimer.Timeout idleTimeout = m_IdleTimeout;
+        if (idleTimeout != null)
+            idleTimeout.cancel();
+
+        final HashedWheelTimer.Timeout heartbeat = m_Heartbeat;
+        if (heartbeat != null)
+            heartbeat.cancel();
+    }
+
+    private void checkIdle() {
+        if (isClosed())
+            return;
+
+        // reads do not reschedule the timeout, it checks again when it would have expired since the last one
+        final long idle = now() - m_LastRead;
+        if (idle >= m_Timeout)
+            abort();
+        else
+            m_IdleTimeout = TIMER.schedule(this::checkIdle, m_Timeout - idle);
+    }
+
+    private void heartbeat() {
+        if (isClosed())
+            return;
+
+        // a connection writing messages needs no ping
+        final long idle = now() - m_LastWrite;
+        if (idle >= PING_INTERVAL) {
+            send("\0", PING_KEY);
+            m_Heartbeat = TIMER.schedule(this::heartbeat, PING_INTERVAL);
+        }
+        else {
+            m_Heartbeat = TIMER.schedule(this::heartbeat, PING_INTERVAL - idle);
+        }
+    }
+
+    private static long now() {
+        return System.nanoTime() / 1000000;
+    }
+
+    /**
+     * Called after a message is queued, for transports writing on their own threads.
+     */
+    protected void onQueued() {
+    }
+
+    /**
+     * Closes the socket without waiting for the threads, from any thread; the reading thread then dispatches the close.
+     */
+    protected void abort() {
+        try {
+            final Socket socket = m_Socket;
+            if (socket != null)
+                socket.close();
+        }
+        catch (IOException e) {
+            // do nothing
+        }
+    }
+
+    /**
+     * Drops the messages not written yet.
+     */
+    protected void clearQueue() {
+        m_Mutex.lock();
+        try {
+            m_MessageQueue.clear();
+        }
+        finally {
+            m_Mutex.unlock();
+        }
+    }
+
+    /**
+     * Takes the next message to write, null if there is none or if the writing waits for a protocol answer.
+     * Once taken, the message is neither replaced nor dropped.
+     */
+    protected Object takeMessage() {
+        m_Mutex.lock();
+        try {
+            if (m_AwaitingAnswer)
+                return null;
+
+            final Object item = m_MessageQueue.poll();
+            if (item != null)
+                m_LastWrite = now();
+
+            // a proposal holds the following messages until the answer, which may switch the protocol
+            if (item instanceof Hello && ((Hello) item).m_IsProposal) {
+                m_AwaitingAnswer = true;
+                m_HasProposed = true;
+                m_AnswerDeadline = System.nanoTime() + ANSWER_TIMEOUT * 1000000;
+            }
+
+            return item;
+        }
+        finally {
+            m_Mutex.unlock();
+        }
+    }
+
+    /**
+     * Bytes of a message taken from the queue, with the protocol in use at that point of the stream; called by the writing thread.
+     * Shared buffers and frames are not copied, the bytes are a view of them.
+     */
+    protected ByteBuffer encode(Object item) {
+        if (item instanceof Hello) {
+            final Hello hello = (Hello) item;
+            if (!hello.m_IsProposal)
+                m_WriteProtocol = hello.m_Protocol;
+
+            return encodeLine(Protocol.hello(hello.m_Protocol));
+        }
+
+        if (item instanceof ByteBuffer)
+            return ((ByteBuffer) item).duplicate();
+
+        if (item instanceof SharedBuffer)
+            return ((SharedBuffer) item).getBuffer().duplicate();
+
+        if (m_WriteProtocol == Protocol.BINARY)
+            return Protocol.textFrame((String) item);
+
+        return encodeLine((String) item);
+    }
+
+    private static ByteBuffer encodeLine(String line) {
+        final byte[] bytes = line.getBytes(LINE_CHARSET);
+        final ByteBuffer buffer = ByteBuffer.allocate(bytes.length + LINE_SEPARATOR.length);
+        buffer.put(bytes).put(LINE_SEPARATOR).flip();
+        return buffer;
+    }
+
+    /**
+     * Parses received bytes into lines or frames, according to the protocol in use, and dispatches them.
+     * @return false if the connection got closed meanwhile
+     */
+    protected boolean receive(byte[] bytes, int count) {
+        m_LastRead = now();
+
+        int i = 0;
+        while (i < count) {
+            if (m_ReadProtocol == Protocol.TEXT) {
+                final byte b = bytes[i++];
+
+                if (b != '\n') {
+                    append(b);
+                    continue;
+                }
+
+                // a line separator byte never occurs within a multi-byte character
+                final int length = m_LineLength > 0 && m_Line[m_LineLength - 1] == '\r' ? m_LineLength - 1 : m_LineLength;
+                m_LineLength = 0;
+
+                final String line = new String(m_Line, 0, length, LINE_CHARSET);
+
+                // the hello of this end's proposal, then the one of the other end's proposal, then its confirmation
+                final int hello = Protocol.parseHello(line);
+                if (hello >= 0) {
+                    if (m_HasProposed) {
+                        m_ReadProtocol = settle(hello);
+                    }
+                    else if (m_AnsweredProtocol >= 0) {
+                        m_ReadProtocol = m_AnsweredProtocol;
+                        m_AnsweredProtocol = -1;
+                    }
+                    else {
+                        answer(hello);
+                    }
+
+                    continue;
+                }
+
+                dispatchMessage(line);
+            }
+            else {
+                // the length first, then as much of the frame as available
+                final int needed = m_LineLength < 4 ? 4 : 4 + frameLength();
+                final int available = Math.min(needed - m_LineLength, count - i);
+
+                for (int end = i + available; i < end; i++)
+                    append(bytes[i]);
+
+                if (m_LineLength < needed)
+                    continue;
+
+                if (m_LineLength == 4) {
+                    final int length = frameLength();
+                    if (length < 1 || length > Protocol.MAX_FRAME_SIZE) {
+                        System.err.println("Invalid frame length: " + length);
+                        close();
+                        return false;
+                    }
+
+                    continue;
+                }
+
+                m_LineLength = 0;
+
+                // a frame whose content does not match its length closes the connection, as an invalid length does
+                try {
+                    dispatchFrame(m_Line[4], ByteBuffer.wrap(m_Line, Protocol.HEADER_SIZE, needed - Protocol.HEADER_SIZE).slice());
+                }
+                catch (BufferUnderflowException | IllegalArgumentException e) {
+                    System.err.println("Invalid frame: " + e);
+                    close();
+                    return false;
+                }
+            }
+
+            if (isClosed())
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Answers a protocol proposal of the other end, which keeps writing with the text protocol until it confirms;
+     * called on the reading thread.
+     */
+    protected void answer(int requested) {
+        final int protocol = Protocol.isSupported(requested) ? requested : Protocol.TEXT;
+
+        m_Mutex.lock();
+        try {
+            m_MessageQueue.addControl(new Hello(protocol, false));
+            m_Protocol = protocol;
+            m_QueueNotEmpty.signal();
+        }
+        finally {
+            m_Mutex.unlock();
+        }
+
+        if (protocol != Protocol.TEXT)
+            m_AnsweredProtocol = protocol;
+
+        onQueued();
+    }
+
+    /**
+     * Takes the answer to the proposal of this end; called on the reading thread. Unless the proposal timed out meanwhile,
+     * confirms the protocol chosen, switching to it, and resumes writing; a late answer leaves the writing in text.
+     * @return the protocol chosen, which the other end uses from then on
+     */
+    private int settle(int answered) {
+        final int protocol = Protocol.isSupported(answered) ? answered : Protocol.TEXT;
+
+        m_Mutex.lock();
+        try {
+            m_HasProposed = false;
+
+            if (m_AwaitingAnswer) {
+                m_AwaitingAnswer = false;
+
+                if (protocol != Protocol.TEXT) {
+                    m_MessageQueue.addControl(new Hello(protocol, false));
+                    m_Protocol = protocol;
+                }
+
+                m_QueueNotEmpty.signal();
+            }
+        }
+        finally {
+            m_Mutex.unlock();
+        }
+
+        onQueued();
+        return protocol;
+    }
+
+    private void append(byte b) {
+        if (m_LineLength == m_Line.length)
+            m_Line = Arrays.copyOf(m_Line, m_Line.length * 2);
+
+        m_Line[m_LineLength++] = b;
+    }
+
+    private int frameLength() {
+        return ByteBuffer.wrap(m_Line, 0, 4).getInt();
+    }
+
+    protected void dispatchMessage(String message) {
+        if (StringUtils.isNullOrWhitespace(message))
+            return;
+
+        for (EventHandler handler : m_EventHandlers) {
+            handler.onReceiveMessage(this, message);
+        }
+    }
+
+    protected void dispatchFrame(int type, ByteBuffer payload) {
+        if (type == Protocol.FRAME_TEXT) {
+            dispatchMessage(Protocol.getString(payload));
+            return;
+        }
+
+        for (EventHandler handler : m_EventHandlers) {
+            handler.onReceiveFrame(this, type, payload.duplicate());
+        }
+    }
+
+    protected void dispatchClose() {
+        for (EventHandler handler : m_EventHandlers) {
+            handler.onCloseConnection(this);
+        }
+    }
+
     public interface EventHandler {
         void onReceiveMessage(TcpConnection connection, String message);
         void onCloseConnection(TcpConnection connection);
+
+        /**
+         * Binary protocol frame other than text; the payload is only valid during the call.
+         */
+        default void onReceiveFrame(TcpConnection connection, int type, ByteBuffer payload) {
+        }
     }
 
-    private class ReaderThread extends Thread {
+    /**
+     * Protocol hello in the queue, written as a text line; the protocol changes after an answer or a confirmation.
+     */
+    private static class Hello {
 
-        private final BufferedReader m_Reader;
+        private final int m_Protocol;
+        private final boolean m_IsProposal;
 
-        private ReaderThread(InputStream inputStream) {
-            super("Tcp Connection Stream Reader");
-            m_Reader = new BufferedReader(new InputStreamReader(inputStream));
+        private Hello(int protocol, boolean isProposal) {
+            m_Protocol = protocol;
+            m_IsProposal = isProposal;
+        }
+
+    }
+
+    private class StreamReader implements Runnable {
+
+        private final InputStream m_Stream;
+
+        private StreamReader(InputStream inputStream) {
+            m_Stream = inputStream;
         }
 
         @Override
         public void run() {
             try {
-                String message;
-                while ((message = m_Reader.readLine()) != null) {
-                    if (!StringUtils.isNullOrWhitespace(message)) {
-                        for (EventHandler handler : m_EventHandlers) {
-                            handler.onReceiveMessage(TcpConnection.this, message);
-                        }
-                    }
+                final byte[] buffer = new byte[READ_BUFFER_SIZE];
+
+                int count;
+                while ((count = m_Stream.read(buffer)) >= 0) {
+                    if (!receive(buffer, count))
+                        break;
                 }
             }
-            catch (SocketException|SocketTimeoutException se) {
+            catch (SocketException se) {
                 // do nothing; connection closed
             }
             catch (Exception e) {
@@ -126,73 +750,84 @@ public class TcpConnection extends Observable {
             }
             finally {
                 try {
-                    m_Reader.close();
+                    m_Stream.close();
                 } catch (IOException e) {
                     // do nothing
                 }
                 finally {
                     close();
-
-                    for (EventHandler handler : m_EventHandlers) {
-                        handler.onCloseConnection(TcpConnection.this);
-                    }
+                    dispatchClose();
                 }
             }
         }
     }
 
-    private class WriterThread extends Thread {
+    private class StreamWriter implements Runnable {
 
-        private final PrintWriter m_Writer;
+        private final OutputStream m_Stream;
 
-        private WriterThread(OutputStream outputStream) {
-            super("Tcp Connection Stream Writer");
-            m_Writer = new PrintWriter(outputStream);
+        private StreamWriter(OutputStream outputStream) {
+            m_Stream = new BufferedOutputStream(outputStream, READ_BUFFER_SIZE);
         }
 
         @Override
         public void run() {
+            final ArrayList<Object> batch = new ArrayList<>();
+
             try {
-                synchronized (m_Mutex) {
-                    while (true) {
-                        try {
-                            if (m_MessageQueue.isEmpty())
-                                m_Mutex.wait();
-
-                            if (m_Socket == null || m_Socket.isClosed())
-                                break;
-
-                            m_MessageQueue.forEach(m_Writer::println);
-                            m_Writer.flush();
-                            m_MessageQueue.clear();
+                while (true) {
+                    m_Mutex.lock();
+                    try {
+                        while (!isClosed() && (m_MessageQueue.isEmpty() || m_AwaitingAnswer)) {
+                            if (!m_AwaitingAnswer) {
+                                m_QueueNotEmpty.await();
+                                continue;
+                            }
+
+                            // no answer, the other end does not negotiate and the protocol remains text
+                            final long remaining = m_AnswerDeadline - System.nanoTime();
+                            if (remaining <= 0)
+                                m_AwaitingAnswer = false;
+                            else
+                                m_QueueNotEmpty.awaitNanos(remaining);
                         }
-                        catch (InterruptedException ie) {
+
+                        if (isClosed())
                             break;
-                        }
+
+                        Object item;
+                        while ((item = takeMessage()) != null)
+                            batch.add(item);
+                    }
+                    finally {
+                        m_Mutex.unlock();
                     }
-                }
-            }
-            finally {
-                m_Writer.close();
-            }
-        }
 
-    }
+                    // written out of the lock, a stalled consumer does not block the senders
+                    for (Object item : batch) {
+                        final ByteBuffer bytes = encode(item);
+                        m_Stream.write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+                    }
 
-    private class PingThread extends Thread {
+                    m_Stream.flush();
 
-        private PingThread() {
-            super("Tcp Connection Ping");
-        }
+                    batch.forEach(SendQueue::release);
+                    batch.clear();
+                }
+            }
+            catch (InterruptedException|IOException e) {
+                // do nothing; connection closed
+            }
+            finally {
+                // messages that will not be written
+                batch.forEach(SendQueue::release);
+                clearQueue();
 
-        @Override
-        public void run() {
-            while (m_Socket != null && !m_Socket.isClosed()) {
-                send("\0");
                 try {
-                    Thread.sleep(5000);
-                } catch (InterruptedException e) {
-                    break;
+                    m_Stream.close();
+                }
+                catch (IOException e) {
+                    // do nothing
                 }
             }
         }
@@ -1,8 +1,11 @@
 package Net;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 
 /**
  * Created by Mike on 7/10/2017.
@@ -15,14 +18,37 @@ public abstract class TcpListener implements Runnable, TcpConnection.EventHandle
     private ServerSocket m_Server;
     private Thread m_Thread;
 
-    public TcpListener(int port, int timeout) throws IOException {
+    // non-blocking mode
+    private final NioReactor m_Reactor;
+    private ServerSocketChannel m_Channel;
+    private final int m_Timeout;
+
+    /**
+     * With a reactor, the connections are accepted and served by its I/O threads instead of threads of their own.
+     */
+    public TcpListener(int port, int timeout, NioReactor reactor) throws IOException {
         Port = port;
 
-        m_Server = new ServerSocket(Port);
-        m_Server.setSoTimeout(timeout);
+        m_Reactor = reactor;
+        m_Timeout = timeout;
+
+        if (m_Reactor == null) {
+            m_Server = new ServerSocket(Port);
+            m_Server.setSoTimeout(timeout);
+        }
+        else {
+            m_Channel = ServerSocketChannel.open();
+            m_Channel.bind(new InetSocketAddress(Port));
+            m_Channel.configureBlocking(false);
+        }
+
         m_IsRunning = false;
     }
 
+    public TcpListener(int port, int timeout) throws IOException {
+        this(port, timeout, null);
+    }
+
     public TcpListener(int port) throws IOException {
         this(port, Constants.Integers.SOCKET_TIMEOUT);
     }
@@ -51,12 +77,34 @@ public abstract class TcpListener implements Runnable, TcpConnection.EventHandle
         }
     }
 
+    /**
+     * Accepts a connection in non-blocking mode; called on an I/O thread of the reactor.
+     */
+    void accept(SocketChannel channel) throws IOException {
+        if (!m_IsRunning) {
+            channel.close();
+            return;
+        }
+
+        NioConnection connection = new NioConnection(channel, m_Reactor, m_Timeout);
+        connection.addEventHandler(TcpListener.this);
+
+        onReceiveNewConnection(connection);
+        connection.open();
+    }
+
     public void startListening() {
         if (m_IsRunning)
             return;
 
         m_IsRunning = true;
-        m_Thread = new Thread(this);
+
+        if (m_Reactor != null) {
+            m_Reactor.listen(m_Channel, this);
+            return;
+        }
+
+        m_Thread = ConnectionThreads.newThread(this, "Tcp Listener " + Port);
         m_Thread.start();
     }
 
@@ -64,6 +112,19 @@ public abstract class TcpListener implements Runnable, TcpConnection.EventHandle
         if (!m_IsRunning)
             return;
 
+        if (m_Reactor != null) {
+            m_IsRunning = false;
+
+            try {
+                m_Channel.close();
+            }
+            catch (IOException e) {
+                // do nothing
+            }
+
+            return;
+        }
+
         try {
             m_IsRunning = false;
             m_Server.close();
@@ -0,0 +1,130 @@
+package Utils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedule of a task run at a fixed rate, whatever the time each run takes, and what it cost: a run due while the
+ * previous one was still going starts as soon as it ends, and the runs missed meanwhile are skipped, merged into it,
+ * instead of piling up.
+ */
+public class FixedRate {
+
+    private final long m_Period; // ns
+    private long m_Next;
+    private long m_Start;
+    private boolean m_IsStarted;
+
+    private long m_RunCount;
+    private long m_SkippedCount;
+    private long m_OverrunCount;
+    private long m_LastLateness;
+    private long m_MaxLateness;
+    private long m_LastDuration;
+    private long m_MaxDuration;
+
+    /**
+     * @param rate runs per second
+     */
+    public FixedRate(double rate) {
+        m_Period = (long) (TimeUnit.SECONDS.toNanos(1) / Math.max(rate, 1e-3));
+        m_Next = 0;
+        m_IsStarted = false;
+    }
+
+    public long getPeriod() {
+        return m_Period;
+    }
+
+    /**
+     * Due time of the next run, on the {@link System#nanoTime()} clock; the first run is due at once.
+     */
+    public long getNext() {
+        return m_Next;
+    }
+
+    public boolean isDue(long now) {
+        return !m_IsStarted || now - m_Next >= 0;
+    }
+
+    /**
+     * Starts a due run and schedules the next one a period after the time this one was due.
+     * @return the number of runs skipped since the previous one
+     */
+    public long begin(long now) {
+        if (!m_IsStarted) {
+            m_Next = now;
+            m_IsStarted = true;
+        }
+
+        final long lateness = now - m_Next;
+        final long skipped = lateness / m_Period;
+
+        m_Start = now;
+        m_Next += (skipped + 1) * m_Period;
+
+        m_RunCount++;
+        m_SkippedCount += skipped;
+        m_LastLateness = lateness;
+        m_MaxLateness = Math.max(m_MaxLateness, lateness);
+        return skipped;
+    }
+
+    /**
+     * Ends the run.
+     * @return whether it took longer than a period
+     */
+    public boolean end(long now) {
+        final long duration = now - m_Start;
+
+        m_LastDuration = duration;
+        m_MaxDuration = Math.max(m_MaxDuration, duration);
+
+        if (duration > m_Period) {
+            m_OverrunCount++;
+            return true;
+        }
+
+        return false;
+    }
+
+    public long getRunCount() {
+        return m_RunCount;
+    }
+
+    /**
+     * Runs merged into later ones because they were due before the previous ended.
+     */
+    public long getSkippedCount() {
+        return m_SkippedCount;
+    }
+
+    /**
+     * Runs that took longer than a period.
+     */
+    public long getOverrunCount() {
+        return m_OverrunCount;
+    }
+
+    /**
+     * Time in nanoseconds between the due time of the last run and its start.
+     */
+    public long getLastLateness() {
+        return m_LastLateness;
+    }
+
+    public long getMaxLateness() {
+        return m_MaxLateness;
+    }
+
+    /**
+     * Time in nanoseconds the last run took.
+     */
+    public long getLastDuration() {
+        return m_LastDuration;
+    }
+
+    public long getMaxDuration() {
+        return m_MaxDuration;
+    }
+
+}
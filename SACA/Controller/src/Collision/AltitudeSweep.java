@@ -0,0 +1,191 @@
+package Collision;
+
+import Traffic.TrafficStore;
+
+import java.util.Arrays;
+
+import static Collision.CollisionDetection.HORIZONTAL_NOTICE_DISTANCE;
+import static Collision.CollisionDetection.VERTICAL_NOTICE_DISTANCE;
+
+/**
+ * Sweep and prune along the altitude axis.
+ * Each airplane covers an altitude interval of the vertical notice distance, widened by how far
+ * it climbs or descends within the lookahead; only airplanes with overlapping intervals are paired.
+ * The sort order is kept between builds: the airplanes already there are insertion sorted, which only moves
+ * the few that changed flight level since the previous build, while newcomers are sorted on their own
+ * and merged in, so that k of them cost O(n + k log k) rather than an insertion each.
+ */
+class AltitudeSweep implements BroadPhase {
+
+    private TrafficStore m_Traffic;
+    private float m_Lookahead;
+
+    private int[] m_Order;
+    private float[] m_Altitudes;
+    private float[] m_Reaches;
+    private float m_MaxReach;
+    private int m_Count;
+
+    private int[] m_Ranks;
+    private boolean[] m_Present;
+    private long[] m_Newcomers; // altitude then slot, see key()
+
+    AltitudeSweep() {
+        m_Lookahead = 0.0f;
+        m_Order = new int[0];
+        m_Altitudes = new float[0];
+        m_Reaches = new float[0];
+        m_MaxReach = 0.0f;
+        m_Count = 0;
+        m_Ranks = new int[0];
+        m_Present = new boolean[0];
+        m_Newcomers = new long[0];
+    }
+
+    /**
+     * Time in seconds over which the altitude intervals are widened by the climb rate.
+     */
+    void setLookahead(float seconds) {
+        m_Lookahead = seconds;
+    }
+
+    @Override
+    public void build(TrafficStore traffic) {
+        final int slotCount = traffic.getSlotCount();
+        ensureCapacity(slotCount);
+
+        m_Traffic = traffic;
+
+        // drop the airplanes that left, the others keep their previous order
+        int count = 0;
+        for (int i = 0; i < m_Count; i++) {
+            final int slot = m_Order[i];
+
+            if (traffic.isUsed(slot))
+                m_Order[count++] = slot;
+            else
+                m_Present[slot] = false;
+        }
+
+        // the airplanes already there are mostly still in order
+        final float[] altitudes = traffic.PosZ;
+        for (int i = 1; i < count; i++) {
+            final int slot = m_Order[i];
+            final float altitude = altitudes[slot];
+
+            int j = i - 1;
+            while (j >= 0 && altitudes[m_Order[j]] > altitude) {
+                m_Order[j + 1] = m_Order[j];
+                j--;
+            }
+
+            m_Order[j + 1] = slot;
+        }
+
+        int newcomerCount = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (traffic.isUsed(slot) && !m_Present[slot]) {
+                m_Present[slot] = true;
+                m_Newcomers[newcomerCount++] = key(altitudes[slot], slot);
+            }
+        }
+
+        Arrays.sort(m_Newcomers, 0, newcomerCount);
+
+        // merged from the top down, into the room past the airplanes already sorted
+        int last = count - 1;
+        for (int k = newcomerCount - 1; k >= 0; k--) {
+            final int newcomer = (int) m_Newcomers[k];
+
+            while (last >= 0 && altitudes[m_Order[last]] > altitudes[newcomer]) {
+                m_Order[last + k + 1] = m_Order[last];
+                last--;
+            }
+
+            m_Order[last + k + 1] = newcomer;
+        }
+
+        count += newcomerCount;
+        m_Count = count;
+
+        m_MaxReach = 0.0f;
+        for (int i = 0; i < count; i++) {
+            final int slot = m_Order[i];
+            final float climbRate = Math.abs(traffic.DirZ[slot] * traffic.Speed[slot]) / 3600; // km/s
+
+            m_Altitudes[i] = altitudes[slot];
+            m_Reaches[i] = VERTICAL_NOTICE_DISTANCE / 2 + climbRate * m_Lookahead;
+            m_MaxReach = Math.max(m_MaxReach, m_Reaches[i]);
+            m_Ranks[slot] = i;
+        }
+    }
+
+    @Override
+    public void forEachPair(int part, int parts, PairVisitor visitor) {
+        final int from = (int) ((long) m_Count * part / parts);
+        final int to = (int) ((long) m_Count * (part + 1) / parts);
+
+        for (int i = from; i < to; i++) {
+            final float reach = m_Reaches[i] + m_MaxReach;
+
+            for (int j = i + 1; j < m_Count && m_Altitudes[j] - m_Altitudes[i] <= reach; j++) {
+                if (overlaps(i, j))
+                    visitor.visit(m_Order[i], m_Order[j]);
+            }
+        }
+    }
+
+    @Override
+    public void forEachCandidate(int a, PairVisitor visitor) {
+        final int i = m_Ranks[a];
+        final float reach = m_Reaches[i] + m_MaxReach;
+
+        for (int j = i - 1; j >= 0 && m_Altitudes[i] - m_Altitudes[j] <= reach; j--) {
+            if (overlaps(j, i))
+                visitor.visit(a, m_Order[j]);
+        }
+
+        for (int j = i + 1; j < m_Count && m_Altitudes[j] - m_Altitudes[i] <= reach; j++) {
+            if (overlaps(i, j))
+                visitor.visit(a, m_Order[j]);
+        }
+    }
+
+    /**
+     * Tests the altitude intervals of two airplanes by rank, {@code lower <= upper},
+     * then rejects pairs further apart than the horizontal notice distance on either axis.
+     */
+    private boolean overlaps(int lower, int upper) {
+        if (m_Altitudes[upper] - m_Altitudes[lower] > m_Reaches[lower] + m_Reaches[upper])
+            return false;
+
+        final int a = m_Order[lower];
+        final int b = m_Order[upper];
+
+        return Math.abs(m_Traffic.PosX[a] - m_Traffic.PosX[b]) <= HORIZONTAL_NOTICE_DISTANCE &&
+               Math.abs(m_Traffic.PosY[a] - m_Traffic.PosY[b]) <= HORIZONTAL_NOTICE_DISTANCE;
+    }
+
+    /**
+     * Sorts as the altitude, ties broken by slot: the float bits of negative altitudes are flipped
+     * so that they order as signed integers.
+     */
+    private static long key(float altitude, int slot) {
+        final int bits = Float.floatToIntBits(altitude);
+        return (long) (bits ^ ((bits >> 31) & 0x7FFFFFFF)) << 32 | slot;
+    }
+
+    private void ensureCapacity(int slotCount) {
+        if (m_Order.length >= slotCount)
+            return;
+
+        final int capacity = Math.max(slotCount, m_Order.length * 2);
+        m_Order = Arrays.copyOf(m_Order, capacity);
+        m_Altitudes = Arrays.copyOf(m_Altitudes, capacity);
+        m_Reaches = Arrays.copyOf(m_Reaches, capacity);
+        m_Ranks = Arrays.copyOf(m_Ranks, capacity);
+        m_Present = Arrays.copyOf(m_Present, capacity);
+        m_Newcomers = new long[capacity];
+    }
+
+}
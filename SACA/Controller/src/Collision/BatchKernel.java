@@ -0,0 +1,229 @@
+package Collision;
+
+import Entities.Airplane;
+import Traffic.TrafficStore;
+
+import static Collision.CollisionDetection.*;
+
+/**
+ * Narrow phase evaluating a block of airplane pairs at a time.
+ * A first pass tests the whole block against the notice volume, then the few pairs inside it are packed into
+ * lane arrays and go through the same straight-line float operations as {@link CollisionKernel}, early exits
+ * being replaced by masks. Both kernels yield the same states bit for bit.
+ * <p>
+ * The lanes are evaluated with the Vector API when the optional {@code Collision.VectorLanes} class is on the class path
+ * and the runtime resolves {@code jdk.incubator.vector} ({@code --add-modules jdk.incubator.vector}, Java 17 and later);
+ * otherwise by a plain loop, left to the compiler.
+ */
+final class BatchKernel {
+
+    static final int BLOCK = 64; // pairs per batch, a multiple of every vector length
+
+    // evaluation of the packed lanes, see Lanes
+    static final Lanes SCALAR_LANES = BatchKernel::evaluateLanes;
+    static final Lanes VECTOR_LANES = loadVectorLanes();
+
+    // notice pass
+    private final float[] m_Dx = new float[BLOCK];
+    private final float[] m_Dy = new float[BLOCK];
+    private final float[] m_Dz = new float[BLOCK];
+    private final int[] m_Notice = new int[BLOCK];
+
+    // packed lanes of the pairs within the notice volume
+    private final int[] m_Lanes = new int[BLOCK];
+    final float[] X1 = new float[BLOCK];
+    final float[] Y1 = new float[BLOCK];
+    final float[] Z1 = new float[BLOCK];
+    final float[] X2 = new float[BLOCK];
+    final float[] Y2 = new float[BLOCK];
+    final float[] Z2 = new float[BLOCK];
+    final float[] D1X = new float[BLOCK];
+    final float[] D1Y = new float[BLOCK];
+    final float[] D1Z = new float[BLOCK];
+    final float[] D2X = new float[BLOCK];
+    final float[] D2Y = new float[BLOCK];
+    final float[] D2Z = new float[BLOCK];
+    final float[] S1 = new float[BLOCK];
+    final float[] S2 = new float[BLOCK];
+    final int[] Flags = new int[BLOCK];
+
+    private final Lanes m_Evaluator;
+
+    /**
+     * Evaluates the lanes with the Vector API if available.
+     */
+    BatchKernel() {
+        this(VECTOR_LANES != null ? VECTOR_LANES : SCALAR_LANES);
+    }
+
+    BatchKernel(Lanes evaluator) {
+        m_Evaluator = evaluator;
+    }
+
+    static boolean isVectorized() {
+        return VECTOR_LANES != null;
+    }
+
+    /**
+     * Writes into {@code flags} the collision detection state raised by each pair ({@code first[i]}, {@code second[i]}),
+     * {@code first[i]} being the lowest slot of the pair.
+     *
+     * @param horizon lookahead in seconds
+     */
+    void evaluate(TrafficStore traffic, int[] first, int[] second, int count, float horizon, int[] flags) {
+        final float[] posX = traffic.PosX;
+        final float[] posY = traffic.PosY;
+        final float[] posZ = traffic.PosZ;
+
+        for (int i = 0; i < count; i++) {
+            m_Dx[i] = posX[first[i]] - posX[second[i]];
+            m_Dy[i] = posY[first[i]] - posY[second[i]];
+            m_Dz[i] = posZ[first[i]] - posZ[second[i]];
+        }
+
+        // no state is raised outside the notice volume
+        for (int i = 0; i < count; i++) {
+            final float posXyDistance = (float) Math.sqrt(m_Dx[i] * m_Dx[i] + m_Dy[i] * m_Dy[i]);
+            final float posZDistance = Math.abs(m_Dz[i]);
+
+            m_Notice[i] = posXyDistance <= HORIZONTAL_NOTICE_DISTANCE & posZDistance <= VERTICAL_NOTICE_DISTANCE ? 1 : 0;
+            flags[i] = 0;
+        }
+
+        int lanes = 0;
+        for (int i = 0; i < count; i++) {
+            m_Lanes[lanes] = i;
+            lanes += m_Notice[i];
+        }
+
+        for (int lane = 0; lane < lanes; lane++) {
+            final int a = first[m_Lanes[lane]];
+            final int b = second[m_Lanes[lane]];
+
+            X1[lane] = posX[a];
+            Y1[lane] = posY[a];
+            Z1[lane] = posZ[a];
+            X2[lane] = posX[b];
+            Y2[lane] = posY[b];
+            Z2[lane] = posZ[b];
+            D1X[lane] = traffic.DirX[a];
+            D1Y[lane] = traffic.DirY[a];
+            D1Z[lane] = traffic.DirZ[a];
+            D2X[lane] = traffic.DirX[b];
+            D2Y[lane] = traffic.DirY[b];
+            D2Z[lane] = traffic.DirZ[b];
+            S1[lane] = traffic.Speed[a];
+            S2[lane] = traffic.Speed[b];
+        }
+
+        m_Evaluator.evaluate(this, lanes, horizon);
+
+        for (int lane = 0; lane < lanes; lane++)
+            flags[m_Lanes[lane]] = Flags[lane];
+    }
+
+    private static void evaluateLanes(BatchKernel batch, int lanes, float horizon) {
+        for (int i = 0; i < lanes; i++) {
+            final float x1 = batch.X1[i], y1 = batch.Y1[i], z1 = batch.Z1[i];
+            final float x2 = batch.X2[i], y2 = batch.Y2[i], z2 = batch.Z2[i];
+            final float d1x = batch.D1X[i], d1y = batch.D1Y[i], d1z = batch.D1Z[i];
+            final float d2x = batch.D2X[i], d2y = batch.D2Y[i], d2z = batch.D2Z[i];
+
+            final float dx = x1 - x2;
+            final float dy = y1 - y2;
+
+            final float posXyDistance = (float) Math.sqrt(dx * dx + dy * dy);
+            final float posZDistance = Math.abs(z1 - z2);
+
+            final boolean warn = posXyDistance <= HORIZONTAL_DISTURBANCE_DISTANCE & posZDistance <= VERTICAL_DISTURBANCE_DISTANCE;
+            final boolean sameLevel = posZDistance <= 0.1524;
+
+            final float speed1 = Math.max(batch.S1[i], 0.1f);
+            final float speed2 = Math.max(batch.S2[i], 0.1f);
+            final float reach1 = speed1 * horizon / 3600;
+            final float reach2 = speed2 * horizon / 3600;
+
+            // trajectory segment bounds
+            final float ex1 = x1 + d1x * reach1, ey1 = y1 + d1y * reach1, ez1 = z1 + d1z * reach1;
+            final float ex2 = x2 + d2x * reach2, ey2 = y2 + d2y * reach2, ez2 = z2 + d2z * reach2;
+
+            final float gapX = Math.max(0.0f, Math.max(Math.min(x2, ex2) - Math.max(x1, ex1), Math.min(x1, ex1) - Math.max(x2, ex2)));
+            final float gapY = Math.max(0.0f, Math.max(Math.min(y2, ey2) - Math.max(y1, ey1), Math.min(y1, ey1) - Math.max(y2, ey2)));
+            final float gapZ = Math.max(0.0f, Math.max(Math.min(z2, ez2) - Math.max(z1, ez1), Math.min(z1, ez1) - Math.max(z2, ez2)));
+
+            final boolean reachable = warn
+                    ? gapX <= HORIZONTAL_PANIC_DISTANCE & gapY <= HORIZONTAL_PANIC_DISTANCE & gapZ <= VERTICAL_PANIC_DISTANCE
+                    : sameLevel
+                    ? gapX < HORIZONTAL_DISTURBANCE_DISTANCE & gapY < HORIZONTAL_DISTURBANCE_DISTANCE
+                    : gapZ < VERTICAL_DISTURBANCE_DISTANCE;
+
+            // nearest points between both rays
+            final float wx = x2 - x1;
+            final float wy = y2 - y1;
+            final float wz = z2 - z1;
+
+            final float p = d1x * d2x + d1y * d2y + d1z * d2z;
+            final float q = d1x * wx + d1y * wy + d1z * wz;
+            final float r = d2x * wx + d2y * wy + d2z * wz;
+            final float s = d1x * d1x + d1y * d1y + d1z * d1z;
+            final float t = d2x * d2x + d2y * d2y + d2z * d2z;
+
+            final float denominator = s * t - p * p;
+            final float fact1 = (-p * r + q * t) / denominator;
+            final float fact2 = (p * q - r * s) / denominator;
+
+            final float c1x = x1 + d1x * fact1, c1y = y1 + d1y * fact1, c1z = z1 + d1z * fact1;
+            final float c2x = x2 + d2x * fact2, c2y = y2 + d2y * fact2, c2z = z2 + d2z * fact2;
+
+            final float e1x = c1x - x1, e1y = c1y - y1, e1z = c1z - z1;
+            final float e2x = c2x - x2, e2y = c2y - y2, e2z = c2z - z2;
+
+            final float dot1 = e1x * d1x + e1y * d1y + e1z * d1z;
+            final float dot2 = e2x * d2x + e2y * d2y + e2z * d2z;
+
+            final float f1 = (float) Math.sqrt(e1x * e1x + e1y * e1y + e1z * e1z) / speed1;
+            final float f2 = (float) Math.sqrt(e2x * e2x + e2y * e2y + e2z * e2z) / speed2;
+
+            final boolean willCross = reachable
+                    & s != 0 & t != 0 & p * p != s * t
+                    & dot1 > 0 & dot2 > 0
+                    & fact1 <= reach1 & fact2 <= reach2
+                    & Math.abs(f1 - f2) * 3600 <= CROSSING_TIME_WINDOW;
+
+            final float px = c1x - c2x;
+            final float py = c1y - c2y;
+
+            final float pathXyDistance = (float) Math.sqrt(px * px + py * py);
+            final float pathZDistance = Math.abs(c1z - c2z);
+
+            final boolean panic = warn & willCross
+                    & pathXyDistance <= HORIZONTAL_PANIC_DISTANCE & pathZDistance <= VERTICAL_PANIC_DISTANCE;
+            final boolean predicted = !warn & willCross & (sameLevel
+                    ? pathXyDistance < HORIZONTAL_DISTURBANCE_DISTANCE
+                    : pathZDistance < VERTICAL_DISTURBANCE_DISTANCE);
+
+            batch.Flags[i] = panic ? Airplane.FLAG_CD_PANIC
+                    : warn | predicted ? Airplane.FLAG_CD_WARN
+                    : 0;
+        }
+    }
+
+    private static Lanes loadVectorLanes() {
+        try {
+            return (Lanes) Class.forName("Collision.VectorLanes").getDeclaredConstructor().newInstance();
+        }
+        catch (ReflectiveOperationException | LinkageError e) {
+            // not built, older runtime, or the incubator module not added
+            return null;
+        }
+    }
+
+    /**
+     * Evaluates the first lanes of a batch, all of them within the notice volume, into its flags.
+     * The arrays hold {@link #BLOCK} lanes, so whole vectors may be read and written past the count.
+     */
+    interface Lanes {
+        void evaluate(BatchKernel batch, int lanes, float horizon);
+    }
+
+}
@@ -0,0 +1,24 @@
+package Collision;
+
+import Traffic.TrafficStore;
+
+/**
+ * Selects the airplane pairs worth passing to the narrow phase.
+ * Every pair that can raise a collision detection state must be reported.
+ */
+interface BroadPhase {
+
+    void build(TrafficStore traffic);
+
+    /**
+     * Reports each candidate pair once; the pairs are split into {@code parts} disjoint groups
+     * so that groups can be visited concurrently.
+     */
+    void forEachPair(int part, int parts, PairVisitor visitor);
+
+    /**
+     * Reports every candidate of airplane {@code a}, as {@code visit(a, other)}.
+     */
+    void forEachCandidate(int a, PairVisitor visitor);
+
+}
@@ -0,0 +1,398 @@
+package Collision;
+
+import Traffic.TrafficStore;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Raises the collision detection state of every airplane of the traffic store.
+ */
+public class CollisionDetection {
+
+    static final float VERTICAL_NOTICE_DISTANCE        = 0.4572f;  //  km (equiv to 1500 feet)
+    static final float HORIZONTAL_NOTICE_DISTANCE      = 15.0f;    // km
+    static final float VERTICAL_DISTURBANCE_DISTANCE   = 0.3048f;  // km (equiv to 1000 feet)
+    static final float HORIZONTAL_DISTURBANCE_DISTANCE = 9.0f;     // km
+    static final float VERTICAL_PANIC_DISTANCE         = 0.15f;    // km
+    static final float HORIZONTAL_PANIC_DISTANCE       = 1.0f;     // km
+    static final float FATAL_DISTANCE                  = 0.05f;    // km (equiv to 50 meters)
+    static final float CROSSING_TIME_WINDOW            = 30.0f;    // seconds
+
+    private static final float CELL_SIZE = HORIZONTAL_NOTICE_DISTANCE; // km
+    private static final int TASKS_PER_THREAD = 8;
+    private static final float DEFAULT_HORIZON = CROSSING_TIME_WINDOW; // seconds
+
+    public static final int BROAD_PHASE_GRID  = 0;
+    public static final int BROAD_PHASE_SWEEP = 1;
+
+    public static final int KERNEL_SCALAR = 0;
+    public static final int KERNEL_BATCH  = 1;
+
+    private final TrafficStore m_Traffic;
+    private final StateBuffer m_States;
+    private float m_Horizon;
+    private boolean m_Batch;
+
+    // broad phase
+    private final SpatialGrid m_Grid;
+    private final AltitudeSweep m_Sweep;
+    private BroadPhase m_BroadPhase;
+
+    // incremental mode
+    private final PairCache m_Pairs;
+    private final PairVisitor m_DirtyPairs;
+    private boolean m_Incremental;
+
+    // scheduled mode
+    private final ConflictScheduler m_Scheduler;
+    private long m_TimeBudget; // nanoseconds
+
+    // parallel mode
+    private ForkJoinPool m_Pool;
+    private final List<StateBuffer> m_WorkerStates;
+    private long m_Tick;
+
+    public CollisionDetection(TrafficStore traffic) {
+        m_Traffic = traffic;
+        m_States = new StateBuffer();
+        m_Horizon = DEFAULT_HORIZON;
+        m_Batch = false;
+        m_Grid = new SpatialGrid(CELL_SIZE);
+        m_Sweep = new AltitudeSweep();
+        m_BroadPhase = m_Grid;
+        m_Pairs = new PairCache();
+        m_DirtyPairs = this::cacheDirtyPair;
+        m_Incremental = false;
+        m_Scheduler = new ConflictScheduler();
+        m_TimeBudget = 0;
+        m_WorkerStates = new CopyOnWriteArrayList<>();
+        m_Pool = null;
+        m_Tick = 0;
+    }
+
+    /**
+     * Lookahead in seconds: a crossing only raises a state if both airplanes reach it within the horizon.
+     */
+    public void setHorizon(float seconds) {
+        m_Horizon = seconds;
+        m_Traffic.markAllDirty(); // cached pair states were evaluated with the previous horizon
+    }
+
+    public float getHorizon() {
+        return m_Horizon;
+    }
+
+    /**
+     * {@link #KERNEL_SCALAR} evaluates the pairs one by one as the broad phase reports them,
+     * {@link #KERNEL_BATCH} evaluates them by blocks on full updates, with the Vector API where available.
+     * The resulting states do not depend on this setting.
+     */
+    public void setKernel(int kernel) {
+        m_Batch = kernel == KERNEL_BATCH;
+    }
+
+    public int getKernel() {
+        return m_Batch ? KERNEL_BATCH : KERNEL_SCALAR;
+    }
+
+    /**
+     * {@link #BROAD_PHASE_GRID} pairs airplanes sharing neighbouring horizontal cells,
+     * {@link #BROAD_PHASE_SWEEP} pairs airplanes with overlapping altitude intervals,
+     * which suits traffic stacked on flight levels. The resulting states do not depend on this setting.
+     */
+    public void setBroadPhase(int broadPhase) {
+        m_BroadPhase = broadPhase == BROAD_PHASE_SWEEP ? m_Sweep : m_Grid;
+    }
+
+    /**
+     * Time in seconds over which the altitude sweep widens each interval by the airplane climb rate.
+     */
+    public void setSweepLookahead(float seconds) {
+        m_Sweep.setLookahead(seconds);
+    }
+
+    /**
+     * In incremental mode only the pairs involving a dirty airplane of the traffic store are evaluated,
+     * the other pairs keep their cached state. The resulting states do not depend on this setting as long as the
+     * airplanes are put without a time: those put with one, as the controller extrapolates them, stay clean while
+     * flying as predicted, and the state of their pairs would not follow them closing on each other.
+     * Incremental updates run on the calling thread and take precedence over the parallelism, which only applies
+     * to full updates.
+     */
+    public void setIncremental(boolean incremental) {
+        if (incremental && !m_Incremental)
+            m_Traffic.markAllDirty(); // the cache is not maintained by full updates
+
+        m_Incremental = incremental;
+    }
+
+    public boolean isIncremental() {
+        return m_Incremental;
+    }
+
+    /**
+     * Bounds the time spent on each update, counted from its start; 0 evaluates every pair.
+     * With a budget, the candidate pairs within the notice volume are kept between updates and collected again for
+     * a share of the airplanes on each one, newcomers first, then evaluated on the calling thread by time to closest
+     * approach until the budget runs out. The pairs left over keep their previous state until their turn comes;
+     * pairs in panic and pairs just collected are evaluated on every update, beyond the budget if need be.
+     * The incremental and parallel settings do not apply while a budget is set.
+     */
+    public void setTimeBudget(int milliseconds) {
+        if (milliseconds <= 0 && m_TimeBudget > 0)
+            m_Traffic.markAllDirty(); // the incremental cache is not maintained by scheduled updates
+
+        m_TimeBudget = Math.max(milliseconds, 0) * 1000000L;
+    }
+
+    public int getTimeBudget() {
+        return (int) (m_TimeBudget / 1000000L);
+    }
+
+    /**
+     * Number of pairs whose state was carried over instead of being evaluated during the last update.
+     */
+    public int getPendingPairs() {
+        return m_TimeBudget > 0 ? m_Scheduler.getPending() : 0;
+    }
+
+    /**
+     * Time in milliseconds since the least recently evaluated pair was evaluated, as of the last update.
+     */
+    public long getMaxStaleness() {
+        return m_TimeBudget > 0 ? m_Scheduler.getMaxStaleness() / 1000000L : 0;
+    }
+
+    /**
+     * Number of threads evaluating the airplane pairs on full updates; 1 runs the detection sequentially
+     * on the calling thread. The resulting states do not depend on this setting.
+     */
+    public void setParallelism(int parallelism) {
+        if (m_Pool != null) {
+            m_Pool.shutdown();
+            m_Pool = null;
+        }
+
+        if (parallelism > 1)
+            m_Pool = new ForkJoinPool(parallelism, Worker::new, null, false);
+    }
+
+    public int getParallelism() {
+        return m_Pool != null ? m_Pool.getParallelism() : 1;
+    }
+
+    public void update() {
+        final long start = System.nanoTime();
+
+        m_BroadPhase.build(m_Traffic);
+
+        final int slotCount = m_Traffic.getSlotCount();
+        m_Tick++;
+
+        if (m_TimeBudget > 0) {
+            m_Scheduler.update(m_Traffic, m_BroadPhase, m_Horizon, start + m_TimeBudget, m_States.reset(m_Tick, slotCount));
+        }
+        else if (m_Incremental) {
+            evaluateDirty(slotCount);
+        }
+        else if (m_Pool == null) {
+            m_States.reset(m_Tick, slotCount);
+            m_BroadPhase.forEachPair(0, 1, m_States);
+            m_States.flush();
+        }
+        else {
+            final int parts = TASKS_PER_THREAD * m_Pool.getParallelism();
+            m_Pool.invoke(new EvaluateTask(0, parts, parts));
+
+            // merge the partial states of every thread that took part in this update,
+            // including the calling thread if it ended up running some of the tasks
+            final int[] states = m_States.Tick == m_Tick ? m_States.States : m_States.reset(m_Tick, slotCount);
+            for (StateBuffer buffer : m_WorkerStates) {
+                if (buffer.Tick != m_Tick)
+                    continue;
+
+                for (int slot = 0; slot < slotCount; slot++) {
+                    if (buffer.States[slot] > states[slot])
+                        states[slot] = buffer.States[slot];
+                }
+            }
+        }
+
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (m_Traffic.isUsed(slot))
+                m_Traffic.setCdState(slot, m_States.States[slot]);
+        }
+    }
+
+    /**
+     * Re-evaluates the pairs involving at least one dirty airplane and raises the states from the cache.
+     */
+    private void evaluateDirty(int slotCount) {
+        m_Pairs.ensureCapacity(slotCount);
+
+        // forget the pairs of every airplane that changed or left
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (m_Traffic.isDirty(slot))
+                m_Pairs.removeAll(slot);
+        }
+
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (m_Traffic.isDirty(slot) && m_Traffic.isUsed(slot))
+                m_BroadPhase.forEachCandidate(slot, m_DirtyPairs);
+        }
+
+        m_Traffic.clearDirty();
+
+        final int[] states = m_States.reset(m_Tick, slotCount);
+        for (int slot = 0; slot < slotCount; slot++)
+            states[slot] = m_Pairs.getMaxState(slot);
+    }
+
+    private void cacheDirtyPair(int a, int b) {
+        // pairs of two dirty airplanes are evaluated once, from their lowest slot
+        if (b < a && m_Traffic.isDirty(b))
+            return;
+
+        final int flag = evaluate(a, b);
+
+        if (flag != 0)
+            m_Pairs.put(a, b, flag);
+    }
+
+    /**
+     * Always evaluates a pair with the same operand order, so every mode yields the same states bit for bit.
+     */
+    private int evaluate(int a, int b) {
+        return a < b
+                ? CollisionKernel.evaluate(m_Traffic, a, b, m_Horizon)
+                : CollisionKernel.evaluate(m_Traffic, b, a, m_Horizon);
+    }
+
+    private class EvaluateTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int m_From;
+        private final int m_To;
+        private final int m_Parts;
+
+        private EvaluateTask(int from, int to, int parts) {
+            m_From = from;
+            m_To = to;
+            m_Parts = parts;
+        }
+
+        @Override
+        protected void compute() {
+            if (m_To - m_From > 1) {
+                final int middle = (m_From + m_To) >>> 1;
+                invokeAll(new EvaluateTask(m_From, middle, m_Parts), new EvaluateTask(middle, m_To, m_Parts));
+                return;
+            }
+
+            // each thread raises states in its own buffer, merged once all tasks are done
+            final Thread thread = Thread.currentThread();
+            final StateBuffer buffer = thread instanceof Worker ? ((Worker) thread).m_States : m_States;
+
+            if (buffer.Tick != m_Tick)
+                buffer.reset(m_Tick, m_Traffic.getSlotCount());
+
+            m_BroadPhase.forEachPair(m_From, m_Parts, buffer);
+            buffer.flush();
+        }
+
+    }
+
+    private class Worker extends ForkJoinWorkerThread {
+
+        private final StateBuffer m_States = new StateBuffer();
+
+        private Worker(ForkJoinPool pool) {
+            super(pool);
+            setName("Collision Detection Worker " + getPoolIndex());
+        }
+
+        @Override
+        protected void onStart() {
+            super.onStart();
+            m_WorkerStates.add(m_States);
+        }
+
+        @Override
+        protected void onTermination(Throwable exception) {
+            m_WorkerStates.remove(m_States);
+            super.onTermination(exception);
+        }
+
+    }
+
+    /**
+     * Raises the states of both airplanes of every visited pair.
+     * With the batch kernel, the pairs are queued and evaluated once a block is full or on {@link #flush()}.
+     */
+    private class StateBuffer implements PairVisitor {
+
+        int[] States = new int[0];
+        long Tick = -1;
+
+        private final BatchKernel m_Kernel = new BatchKernel();
+        private final int[] m_First = new int[BatchKernel.BLOCK];
+        private final int[] m_Second = new int[BatchKernel.BLOCK];
+        private final int[] m_Flags = new int[BatchKernel.BLOCK];
+        private int m_Count = 0;
+
+        int[] reset(long tick, int slotCount) {
+            if (States.length < slotCount)
+                States = new int[slotCount];
+            else
+                Arrays.fill(States, 0, slotCount, 0);
+
+            Tick = tick;
+            return States;
+        }
+
+        @Override
+        public void visit(int a, int b) {
+            if (m_Batch) {
+                m_First[m_Count] = Math.min(a, b);
+                m_Second[m_Count] = Math.max(a, b);
+
+                if (++m_Count == BatchKernel.BLOCK)
+                    flush();
+            }
+            else {
+                raise(a, b, evaluate(a, b));
+            }
+        }
+
+        /**
+         * Evaluates the queued pairs.
+         */
+        void flush() {
+            if (m_Count == 0)
+                return;
+
+            m_Kernel.evaluate(m_Traffic, m_First, m_Second, m_Count, m_Horizon, m_Flags);
+
+            for (int i = 0; i < m_Count; i++)
+                raise(m_First[i], m_Second[i], m_Flags[i]);
+
+            m_Count = 0;
+        }
+
+        private void raise(int a, int b, int flag) {
+            if (flag > States[a])
+                States[a] = flag;
+
+            if (flag > States[b])
+                States[b] = flag;
+        }
+
+    }
+
+}
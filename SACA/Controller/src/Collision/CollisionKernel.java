@@ -0,0 +1,192 @@
+package Collision;
+
+import Entities.Airplane;
+import Traffic.TrafficStore;
+
+import static Collision.CollisionDetection.*;
+
+/**
+ * Narrow phase of the collision detection, reading the traffic arrays directly.
+ * Performs the same float operations as the Ray/Vector3 version without allocating,
+ * but only looks for crossings along the trajectory segments each airplane flies within the horizon.
+ */
+final class CollisionKernel {
+
+    private CollisionKernel() {
+    }
+
+    /**
+     * Collision detection state raised on both airplanes {@code a} and {@code b}.
+     * The test is symmetric, so each unordered pair only needs to be evaluated once.
+     *
+     * @param horizon lookahead in seconds; nearest points further along the trajectories are ignored
+     */
+    static int evaluate(TrafficStore traffic, int a, int b, float horizon) {
+        final float x1 = traffic.PosX[a];
+        final float y1 = traffic.PosY[a];
+        final float z1 = traffic.PosZ[a];
+        final float x2 = traffic.PosX[b];
+        final float y2 = traffic.PosY[b];
+        final float z2 = traffic.PosZ[b];
+
+        final float d1x = traffic.DirX[a];
+        final float d1y = traffic.DirY[a];
+        final float d1z = traffic.DirZ[a];
+        final float d2x = traffic.DirX[b];
+        final float d2y = traffic.DirY[b];
+        final float d2z = traffic.DirZ[b];
+
+        int flag = 0;
+
+        final float dx = x1 - x2;
+        final float dy = y1 - y2;
+        final float dz = z1 - z2;
+
+        final float posDistance = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+        final float posXyDistance = (float) Math.sqrt(dx * dx + dy * dy);
+        final float posZDistance = Math.abs(z1 - z2);
+
+        // no state is raised outside the notice volume
+        if (posXyDistance > HORIZONTAL_NOTICE_DISTANCE || posZDistance > VERTICAL_NOTICE_DISTANCE)
+            return 0;
+
+        if (posXyDistance <= HORIZONTAL_DISTURBANCE_DISTANCE &&
+            posZDistance <= VERTICAL_DISTURBANCE_DISTANCE)
+            flag = Airplane.FLAG_CD_WARN;
+
+        final boolean sameLevel = posZDistance <= 0.1524; // same vertical flight level
+
+        // distance flown within the horizon, with the same speed floor as the crossing times below
+        final float reach1 = Math.max(traffic.Speed[a], 0.1f) * horizon / 3600;
+        final float reach2 = Math.max(traffic.Speed[b], 0.1f) * horizon / 3600;
+
+        // the nearest points lie on the trajectory segments, so the gaps between the bounding boxes
+        // of both segments bound the path distances from below
+        final float gapX = gap(x1, x1 + d1x * reach1, x2, x2 + d2x * reach2);
+        final float gapY = gap(y1, y1 + d1y * reach1, y2, y2 + d2y * reach2);
+        final float gapZ = gap(z1, z1 + d1z * reach1, z2, z2 + d2z * reach2);
+
+        // skip the crossing test when it cannot change the state
+        if (flag == Airplane.FLAG_CD_WARN) {
+            if (gapX > HORIZONTAL_PANIC_DISTANCE || gapY > HORIZONTAL_PANIC_DISTANCE || gapZ > VERTICAL_PANIC_DISTANCE)
+                return flag;
+        }
+        else if (sameLevel) {
+            if (gapX >= HORIZONTAL_DISTURBANCE_DISTANCE || gapY >= HORIZONTAL_DISTURBANCE_DISTANCE)
+                return flag;
+        }
+        else if (gapZ >= VERTICAL_DISTURBANCE_DISTANCE) {
+            return flag;
+        }
+
+        // nearest points between both rays (see Ray.nearestPointToRay)
+        final float wx = x2 - x1;
+        final float wy = y2 - y1;
+        final float wz = z2 - z1;
+
+        final float p = d1x * d2x + d1y * d2y + d1z * d2z;
+        final float q = d1x * wx + d1y * wy + d1z * wz;
+        final float r = d2x * wx + d2y * wy + d2z * wz;
+        final float s = d1x * d1x + d1y * d1y + d1z * d1z;
+        final float t = d2x * d2x + d2y * d2y + d2z * d2z;
+
+        boolean willCross = false;
+
+        float c1x = 0, c1y = 0, c1z = 0;
+        float c2x = 0, c2y = 0, c2z = 0;
+
+        // there is no nearest point if a direction is zero or both rays are collinear
+        if (s != 0 && t != 0 && p * p != s * t) {
+            // nearest point parameters of both rays share the same terms
+            final float denominator = s * t - p * p;
+            final float fact1 = (-p * r + q * t) / denominator;
+            final float fact2 = (p * q - r * s) / denominator;
+
+            c1x = x1 + d1x * fact1;
+            c1y = y1 + d1y * fact1;
+            c1z = z1 + d1z * fact1;
+            c2x = x2 + d2x * fact2;
+            c2y = y2 + d2y * fact2;
+            c2z = z2 + d2z * fact2;
+
+            // direction towards nearest point
+            final float e1x = c1x - x1;
+            final float e1y = c1y - y1;
+            final float e1z = c1z - z1;
+            final float e2x = c2x - x2;
+            final float e2y = c2y - y2;
+            final float e2z = c2z - z2;
+
+            final float dot1 = e1x * d1x + e1y * d1y + e1z * d1z;
+            final float dot2 = e2x * d2x + e2y * d2y + e2z * d2z;
+
+            // the dot product is positive if the ray direction
+            // and collision position vectors point in the same direction
+            willCross = dot1 > 0 && dot2 > 0;
+
+            // both airplanes must reach their nearest point within the horizon
+            willCross &= fact1 <= reach1 && fact2 <= reach2;
+
+            // add the factor of speed
+            if (willCross) {
+                final float f1 = (float) Math.sqrt(e1x * e1x + e1y * e1y + e1z * e1z) / Math.max(traffic.Speed[a], 0.1f);
+                final float f2 = (float) Math.sqrt(e2x * e2x + e2y * e2y + e2z * e2z) / Math.max(traffic.Speed[b], 0.1f);
+                willCross = Math.abs(f1 - f2) * 3600 <= CROSSING_TIME_WINDOW;
+            }
+        }
+
+        if (willCross) {
+            final float px = c1x - c2x;
+            final float py = c1y - c2y;
+
+            final float pathXyDistance = (float) Math.sqrt(px * px + py * py);
+            final float pathZDistance = Math.abs(c1z - c2z);
+
+            if (flag == Airplane.FLAG_CD_WARN) {
+                if (pathXyDistance <= HORIZONTAL_PANIC_DISTANCE && pathZDistance <= VERTICAL_PANIC_DISTANCE)
+                    flag = Airplane.FLAG_CD_PANIC;
+            }
+            else if (sameLevel) {
+                if (pathXyDistance < HORIZONTAL_DISTURBANCE_DISTANCE) {
+                    flag = Airplane.FLAG_CD_WARN;
+                }
+            }
+            else {
+                if (pathZDistance < VERTICAL_DISTURBANCE_DISTANCE) {
+                    flag = Airplane.FLAG_CD_WARN;
+                }
+            }
+        }
+
+        if (posDistance < FATAL_DISTANCE) {
+            //todo
+        }
+
+        return flag;
+    }
+
+    /**
+     * Whether both airplanes are close enough for {@link #evaluate} to raise any state.
+     */
+    static boolean inNoticeVolume(TrafficStore traffic, int a, int b) {
+        final float dx = traffic.PosX[a] - traffic.PosX[b];
+        final float dy = traffic.PosY[a] - traffic.PosY[b];
+        final float posZDistance = Math.abs(traffic.PosZ[a] - traffic.PosZ[b]);
+
+        return posZDistance <= VERTICAL_NOTICE_DISTANCE &&
+               (float) Math.sqrt(dx * dx + dy * dy) <= HORIZONTAL_NOTICE_DISTANCE;
+    }
+
+    /**
+     * Distance between the intervals [a0, a1] and [b0, b1], given in any order; 0 if they overlap.
+     */
+    private static float gap(float a0, float a1, float b0, float b1) {
+        final float aMin = Math.min(a0, a1);
+        final float aMax = Math.max(a0, a1);
+        final float bMin = Math.min(b0, b1);
+        final float bMax = Math.max(b0, b1);
+
+        return Math.max(0.0f, Math.max(bMin - aMax, aMin - bMax));
+    }
+
+}
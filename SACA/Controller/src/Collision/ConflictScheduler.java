@@ -0,0 +1,562 @@
+package Collision;
+
+import Entities.Airplane;
+import Traffic.TrafficStore;
+
+import java.util.Arrays;
+
+/**
+ * Re-evaluates the candidate pairs within the notice volume by urgency until the deadline of the update.
+ * Pairs are ordered by their time to closest approach minus the time since they were last evaluated,
+ * so the pairs left over become more urgent on the next updates and keep their previous state meanwhile.
+ * Pairs in panic are evaluated on every update and new pairs as soon as they are collected, whatever the deadline.
+ * <p>
+ * Pairs and their heap are kept from one update to the next, each pair with its lowest slot. Each update collects
+ * them again for a share of the slots only, airplanes new to the scheduler first, then from a cursor going round the
+ * slots, for at most half of the time left: a large fleet is collected over several updates instead of the broad
+ * phase running over all of it within each one. The airplanes that left, or whose slot was freed and reused since,
+ * see {@link TrafficStore#getGeneration(int)}, take their pairs along at the start of the next update.
+ * Each slot counts its pairs by state, so the states are raised from the slots instead of going over every pair.
+ */
+class ConflictScheduler implements PairVisitor {
+
+    private static final int CLOCK_CHECK_INTERVAL = 32; // pairs evaluated between two clock checks, once per slot collected
+    private static final int NONE = -1;
+    private static final int INITIAL_PAIRS = 4;
+    private static final int STATES = Airplane.FLAG_CD_PANIC + 1; // states are ordered up to panic
+
+    private TrafficStore m_Traffic;
+    private float m_Horizon;
+    private long m_Now;
+    private final long m_Epoch;
+
+    // pairs by index, NONE as first slot when free
+    private int[] m_First;
+    private int[] m_Second;
+    private int[] m_States;
+    private long[] m_Evaluated;
+    private float[] m_Priorities; // time to closest approach when last evaluated, plus that time in seconds
+    private int[] m_HeapIndices;
+    private int m_Top;            // pairs beyond are free
+    private int[] m_Free;
+    private int m_FreeCount;
+    private int m_PairCount;
+
+    // pairs by lowest slot
+    private int[][] m_Owned;
+    private int[] m_OwnedCounts;
+    private boolean[] m_Seen;     // collected at least once
+    private int[] m_Known;        // generation of the slot plus one while it has pairs or was collected, 0 before
+    private boolean[] m_Left;
+    private int[] m_StateCounts;  // pairs of each slot by state, STATES per slot
+
+    private int m_Cursor;
+
+    // the slot being collected, and the pairs it had by partner
+    private boolean m_IsNewcomer;
+    private int[] m_Collected;
+    private int m_CollectedCount;
+    private int[] m_Marks;
+    private int[] m_MarkedPairs;
+    private int m_Mark;
+
+    // min-heap of every pair by priority
+    private int[] m_Heap;
+    private int m_HeapSize;
+    private int[] m_Polled;
+
+    // pairs found in panic, to evaluate again on the next update
+    private int[] m_Panic;
+    private int m_PanicCount;
+    private int[] m_NextPanic;
+    private int m_NextPanicCount;
+
+    private long m_RaiseTime; // ns the states took to raise from the slots, taken off the time to evaluate
+    private int m_EvaluatedCount;
+    private int m_Pending;
+
+    ConflictScheduler() {
+        m_Epoch = System.nanoTime();
+        m_First = new int[0];
+        m_Second = new int[0];
+        m_States = new int[0];
+        m_Evaluated = new long[0];
+        m_Priorities = new float[0];
+        m_HeapIndices = new int[0];
+        m_Top = 0;
+        m_Free = new int[0];
+        m_FreeCount = 0;
+        m_PairCount = 0;
+        m_Owned = new int[0][];
+        m_OwnedCounts = new int[0];
+        m_Seen = new boolean[0];
+        m_Known = new int[0];
+        m_Left = new boolean[0];
+        m_StateCounts = new int[0];
+        m_Cursor = 0;
+        m_Collected = new int[INITIAL_PAIRS];
+        m_CollectedCount = 0;
+        m_Marks = new int[0];
+        m_MarkedPairs = new int[0];
+        m_Mark = 0;
+        m_Heap = new int[0];
+        m_HeapSize = 0;
+        m_Polled = new int[0];
+        m_Panic = new int[0];
+        m_PanicCount = 0;
+        m_NextPanic = new int[0];
+        m_NextPanicCount = 0;
+        m_RaiseTime = 0;
+        m_Pending = 0;
+    }
+
+    /**
+     * Number of pairs that were not re-evaluated during the last update.
+     */
+    int getPending() {
+        return m_Pending;
+    }
+
+    /**
+     * Time in nanoseconds since the least recently evaluated pair was evaluated, as of the last update.
+     * Goes over every pair.
+     */
+    long getMaxStaleness() {
+        long oldest = m_Now;
+        for (int pair = 0; pair < m_Top; pair++) {
+            if (m_First[pair] != NONE && m_Evaluated[pair] < oldest)
+                oldest = m_Evaluated[pair];
+        }
+
+        return m_Now - oldest;
+    }
+
+    /**
+     * Collects the pairs of some slots, evaluates the most urgent pairs and raises the states of both airplanes
+     * of every pair, evaluated or not.
+     *
+     * @param horizon  lookahead in seconds
+     * @param deadline {@link System#nanoTime()} after which the remaining pairs are carried to the next update
+     */
+    void update(TrafficStore traffic, BroadPhase broadPhase, float horizon, long deadline, int[] states) {
+        m_Traffic = traffic;
+        m_Horizon = horizon;
+        m_Now = System.nanoTime();
+        m_EvaluatedCount = 0;
+
+        final int slotCount = traffic.getSlotCount();
+        ensureSlots(slotCount);
+
+        // the pairs of the airplanes found in panic last time, whatever the load
+        final int[] panic = m_NextPanic;
+        m_NextPanic = m_Panic;
+        m_Panic = panic;
+        m_PanicCount = m_NextPanicCount;
+        m_NextPanicCount = 0;
+
+        // the airplanes that left take their pairs along, owned or not
+        int left = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (m_Known[slot] != 0 && !isKnown(slot)) {
+                removeAll(slot);
+                m_Known[slot] = 0;
+                m_Seen[slot] = false;
+                m_Left[slot] = true;
+                left++;
+            }
+        }
+
+        if (left > 0)
+            removeLeft(slotCount);
+
+        // the last pass over the slots is left out of the time to collect and evaluate
+        final long evaluationDeadline = deadline - m_RaiseTime;
+        collect(broadPhase, slotCount, m_Now + (evaluationDeadline - m_Now) / 2);
+
+        for (int i = 0; i < m_PanicCount; i++) {
+            final int pair = m_Panic[i];
+            if (m_First[pair] != NONE && m_Evaluated[pair] != m_Now)
+                evaluate(pair);
+        }
+
+        // the most urgent pairs until the deadline, then back into the heap with their new priority
+        int polled = 0;
+        while (m_HeapSize > 0) {
+            if (polled % CLOCK_CHECK_INTERVAL == 0 && System.nanoTime() >= evaluationDeadline)
+                break;
+
+            final int pair = poll();
+            m_Polled[polled++] = pair;
+
+            if (m_Evaluated[pair] != m_Now)
+                evaluate(pair);
+        }
+
+        for (int i = 0; i < polled; i++)
+            push(m_Polled[i]);
+
+        m_Pending = m_PairCount - m_EvaluatedCount;
+
+        final long raiseStart = System.nanoTime();
+        for (int slot = 0; slot < slotCount; slot++)
+            states[slot] = getState(slot);
+
+        m_RaiseTime = (m_RaiseTime + System.nanoTime() - raiseStart) / 2;
+    }
+
+    /**
+     * Collects the pairs of the airplanes new to the scheduler, then those of the slots from the cursor on,
+     * until the time runs out; at least one slot per update and at most every slot once.
+     */
+    private void collect(BroadPhase broadPhase, int slotCount, long deadline) {
+        int collected = 0;
+
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (!m_Traffic.isUsed(slot) || m_Seen[slot])
+                continue;
+
+            if (collected > 0 && System.nanoTime() >= deadline)
+                return;
+
+            m_Seen[slot] = true;
+            know(slot);
+            collect(broadPhase, slot, true);
+            collected++;
+        }
+
+        for (int n = 0; n < slotCount; n++) {
+            if (collected > 0 && System.nanoTime() >= deadline)
+                return;
+
+            if (m_Cursor >= slotCount)
+                m_Cursor = 0;
+
+            final int slot = m_Cursor++;
+            if (m_Seen[slot])
+                collect(broadPhase, slot, false);
+
+            collected++;
+        }
+    }
+
+    /**
+     * Replaces the pairs of the slot with its candidates of higher slots, keeping the pairs it already had.
+     * A newcomer also adds itself to the pairs of its candidates of lower slots.
+     */
+    private void collect(BroadPhase broadPhase, int slot, boolean isNewcomer) {
+        final int[] owned = m_Owned[slot];
+        final int count = m_OwnedCounts[slot];
+
+        m_Mark++;
+        for (int i = 0; i < count; i++) {
+            m_Marks[m_Second[owned[i]]] = m_Mark;
+            m_MarkedPairs[m_Second[owned[i]]] = owned[i];
+        }
+
+        m_IsNewcomer = isNewcomer;
+        m_CollectedCount = 0;
+
+        broadPhase.forEachCandidate(slot, this);
+
+        // the pairs no longer candidates
+        for (int i = 0; i < count; i++) {
+            final int pair = owned[i];
+            if (m_MarkedPairs[m_Second[pair]] == pair && m_Marks[m_Second[pair]] == m_Mark)
+                release(pair);
+        }
+
+        ensureOwned(slot, m_CollectedCount);
+        System.arraycopy(m_Collected, 0, m_Owned[slot], 0, m_CollectedCount);
+        m_OwnedCounts[slot] = m_CollectedCount;
+    }
+
+    @Override
+    public void visit(int a, int b) {
+        // pairs are kept and evaluated with the lowest slot first
+        if (b < a) {
+            if (m_IsNewcomer && CollisionKernel.inNoticeVolume(m_Traffic, b, a))
+                addNewcomer(b, a);
+
+            return;
+        }
+
+        // pairs outside the notice volume have no state to schedule
+        if (!CollisionKernel.inNoticeVolume(m_Traffic, a, b))
+            return;
+
+        int pair = NONE;
+        if (m_Marks[b] == m_Mark) {
+            pair = m_MarkedPairs[b];
+            m_MarkedPairs[b] = NONE;
+        }
+
+        if (pair != NONE) {
+            m_Priorities[pair] = timeToClosestApproach(a, b) + seconds(m_Evaluated[pair]);
+            siftUp(m_HeapIndices[pair]);
+            siftDown(m_HeapIndices[pair]);
+        }
+        else {
+            pair = allocate(a, b);
+        }
+
+        if (m_CollectedCount == m_Collected.length)
+            m_Collected = Arrays.copyOf(m_Collected, m_CollectedCount * 2);
+
+        m_Collected[m_CollectedCount++] = pair;
+    }
+
+    /**
+     * Adds the newcomer to the pairs of the lower slot, unless it was collected before it on the same update.
+     */
+    private void addNewcomer(int a, int newcomer) {
+        final int[] owned = m_Owned[a];
+
+        for (int i = 0; i < m_OwnedCounts[a]; i++) {
+            if (m_Second[owned[i]] == newcomer)
+                return;
+        }
+
+        final int pair = allocate(a, newcomer);
+
+        ensureOwned(a, m_OwnedCounts[a] + 1);
+        m_Owned[a][m_OwnedCounts[a]++] = pair;
+    }
+
+    /**
+     * New pair, evaluated right away and added to the heap.
+     */
+    private int allocate(int a, int b) {
+        final int pair;
+        if (m_FreeCount > 0) {
+            pair = m_Free[--m_FreeCount];
+        }
+        else {
+            if (m_Top == m_First.length)
+                growPairs();
+
+            pair = m_Top++;
+        }
+
+        m_First[pair] = a;
+        m_Second[pair] = b;
+        m_States[pair] = 0;
+        count(pair, 1);
+        m_PairCount++;
+        know(a);
+        know(b);
+
+        evaluate(pair);
+        push(pair);
+        return pair;
+    }
+
+    private void release(int pair) {
+        remove(m_HeapIndices[pair]);
+        count(pair, -1);
+
+        m_First[pair] = NONE;
+        m_Free[m_FreeCount++] = pair;
+        m_PairCount--;
+    }
+
+    private void removeAll(int slot) {
+        for (int i = 0; i < m_OwnedCounts[slot]; i++)
+            release(m_Owned[slot][i]);
+
+        m_OwnedCounts[slot] = 0;
+    }
+
+    /**
+     * Releases the pairs of the remaining slots with a partner that left.
+     */
+    private void removeLeft(int slotCount) {
+        for (int slot = 0; slot < slotCount; slot++) {
+            final int[] owned = m_Owned[slot];
+
+            int count = 0;
+            for (int i = 0; i < m_OwnedCounts[slot]; i++) {
+                if (m_Left[m_Second[owned[i]]])
+                    release(owned[i]);
+                else
+                    owned[count++] = owned[i];
+            }
+
+            m_OwnedCounts[slot] = count;
+        }
+
+        Arrays.fill(m_Left, 0, slotCount, false);
+    }
+
+    private void know(int slot) {
+        m_Known[slot] = m_Traffic.getGeneration(slot) + 1;
+    }
+
+    private boolean isKnown(int slot) {
+        return m_Traffic.isUsed(slot) && m_Known[slot] == m_Traffic.getGeneration(slot) + 1;
+    }
+
+    /**
+     * Highest state among the pairs of the slot.
+     */
+    private int getState(int slot) {
+        for (int state = STATES - 1; state > 0; state--) {
+            if (m_StateCounts[slot * STATES + state] > 0)
+                return state;
+        }
+
+        return 0;
+    }
+
+    private void count(int pair, int delta) {
+        m_StateCounts[m_First[pair] * STATES + m_States[pair]] += delta;
+        m_StateCounts[m_Second[pair] * STATES + m_States[pair]] += delta;
+    }
+
+    private void evaluate(int pair) {
+        final int a = m_First[pair];
+        final int b = m_Second[pair];
+        final int state = CollisionKernel.evaluate(m_Traffic, a, b, m_Horizon);
+
+        count(pair, -1);
+        m_States[pair] = state;
+        count(pair, 1);
+        m_Evaluated[pair] = m_Now;
+        m_Priorities[pair] = timeToClosestApproach(a, b) + seconds(m_Now);
+        m_EvaluatedCount++;
+
+        if (state == Airplane.FLAG_CD_PANIC && m_NextPanicCount < m_NextPanic.length)
+            m_NextPanic[m_NextPanicCount++] = pair;
+    }
+
+    private float seconds(long time) {
+        return (time - m_Epoch) / 1e9f;
+    }
+
+    /**
+     * Seconds until both airplanes are closest, capped to the horizon; pairs moving apart get the horizon.
+     */
+    private float timeToClosestApproach(int a, int b) {
+        final TrafficStore traffic = m_Traffic;
+
+        final float wx = traffic.PosX[b] - traffic.PosX[a];
+        final float wy = traffic.PosY[b] - traffic.PosY[a];
+        final float wz = traffic.PosZ[b] - traffic.PosZ[a];
+
+        // relative velocity in km/s
+        final float vx = (traffic.DirX[b] * traffic.Speed[b] - traffic.DirX[a] * traffic.Speed[a]) / 3600;
+        final float vy = (traffic.DirY[b] * traffic.Speed[b] - traffic.DirY[a] * traffic.Speed[a]) / 3600;
+        final float vz = (traffic.DirZ[b] * traffic.Speed[b] - traffic.DirZ[a] * traffic.Speed[a]) / 3600;
+
+        final float vv = vx * vx + vy * vy + vz * vz;
+        if (vv == 0)
+            return m_Horizon;
+
+        final float time = -(wx * vx + wy * vy + wz * vz) / vv;
+        return time > 0 ? Math.min(time, m_Horizon) : m_Horizon;
+    }
+
+    private void push(int pair) {
+        m_Heap[m_HeapSize] = pair;
+        m_HeapIndices[pair] = m_HeapSize;
+        siftUp(m_HeapSize++);
+    }
+
+    private int poll() {
+        final int pair = m_Heap[0];
+        remove(0);
+        return pair;
+    }
+
+    private void remove(int index) {
+        m_HeapIndices[m_Heap[index]] = NONE;
+
+        final int last = m_Heap[--m_HeapSize];
+        if (index == m_HeapSize)
+            return;
+
+        m_Heap[index] = last;
+        m_HeapIndices[last] = index;
+        siftUp(index);
+        siftDown(m_HeapIndices[last]);
+    }
+
+    private void siftUp(int index) {
+        final int pair = m_Heap[index];
+        final float priority = m_Priorities[pair];
+
+        while (index > 0) {
+            final int parent = (index - 1) >>> 1;
+            if (m_Priorities[m_Heap[parent]] <= priority)
+                break;
+
+            m_Heap[index] = m_Heap[parent];
+            m_HeapIndices[m_Heap[index]] = index;
+            index = parent;
+        }
+
+        m_Heap[index] = pair;
+        m_HeapIndices[pair] = index;
+    }
+
+    private void siftDown(int index) {
+        final int pair = m_Heap[index];
+        final float priority = m_Priorities[pair];
+
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= m_HeapSize)
+                break;
+
+            if (child + 1 < m_HeapSize && m_Priorities[m_Heap[child + 1]] < m_Priorities[m_Heap[child]])
+                child++;
+
+            if (m_Priorities[m_Heap[child]] >= priority)
+                break;
+
+            m_Heap[index] = m_Heap[child];
+            m_HeapIndices[m_Heap[index]] = index;
+            index = child;
+        }
+
+        m_Heap[index] = pair;
+        m_HeapIndices[pair] = index;
+    }
+
+    private void ensureSlots(int slotCount) {
+        if (m_OwnedCounts.length >= slotCount)
+            return;
+
+        final int capacity = Math.max(slotCount, m_OwnedCounts.length * 2);
+        m_Owned = Arrays.copyOf(m_Owned, capacity);
+        m_OwnedCounts = Arrays.copyOf(m_OwnedCounts, capacity);
+        m_Seen = Arrays.copyOf(m_Seen, capacity);
+        m_Known = Arrays.copyOf(m_Known, capacity);
+        m_Left = Arrays.copyOf(m_Left, capacity);
+        m_StateCounts = Arrays.copyOf(m_StateCounts, capacity * STATES);
+        m_Marks = Arrays.copyOf(m_Marks, capacity);
+        m_MarkedPairs = Arrays.copyOf(m_MarkedPairs, capacity);
+    }
+
+    private void ensureOwned(int slot, int count) {
+        if (m_Owned[slot] == null)
+            m_Owned[slot] = new int[Math.max(INITIAL_PAIRS, count)];
+        else if (m_Owned[slot].length < count)
+            m_Owned[slot] = Arrays.copyOf(m_Owned[slot], Math.max(count, m_Owned[slot].length * 2));
+    }
+
+    private void growPairs() {
+        final int capacity = Math.max(64, m_First.length * 2);
+        m_First = Arrays.copyOf(m_First, capacity);
+        m_Second = Arrays.copyOf(m_Second, capacity);
+        m_States = Arrays.copyOf(m_States, capacity);
+        m_Evaluated = Arrays.copyOf(m_Evaluated, capacity);
+        m_Priorities = Arrays.copyOf(m_Priorities, capacity);
+        m_HeapIndices = Arrays.copyOf(m_HeapIndices, capacity);
+        m_Free = Arrays.copyOf(m_Free, capacity);
+        m_Heap = Arrays.copyOf(m_Heap, capacity);
+        m_Polled = Arrays.copyOf(m_Polled, capacity);
+        m_Panic = Arrays.copyOf(m_Panic, capacity);
+        m_NextPanic = Arrays.copyOf(m_NextPanic, capacity);
+    }
+
+}
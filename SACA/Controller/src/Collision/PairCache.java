@@ -0,0 +1,88 @@
+package Collision;
+
+import java.util.Arrays;
+
+/**
+ * Non-zero collision detection states of airplane pairs, kept as a partner list per slot.
+ */
+class PairCache {
+
+    private static final int INITIAL_PARTNERS = 4;
+
+    private int[][] m_Partners;
+    private int[][] m_States;
+    private int[] m_Counts;
+
+    PairCache() {
+        m_Partners = new int[0][];
+        m_States = new int[0][];
+        m_Counts = new int[0];
+    }
+
+    void ensureCapacity(int slotCount) {
+        if (m_Counts.length >= slotCount)
+            return;
+
+        final int capacity = Math.max(slotCount, m_Counts.length * 2);
+        m_Partners = Arrays.copyOf(m_Partners, capacity);
+        m_States = Arrays.copyOf(m_States, capacity);
+        m_Counts = Arrays.copyOf(m_Counts, capacity);
+    }
+
+    void put(int a, int b, int state) {
+        add(a, b, state);
+        add(b, a, state);
+    }
+
+    /**
+     * Forgets every pair involving the slot.
+     */
+    void removeAll(int slot) {
+        final int[] partners = m_Partners[slot];
+
+        for (int i = 0; i < m_Counts[slot]; i++) {
+            final int partner = partners[i];
+            final int[] others = m_Partners[partner];
+            final int[] states = m_States[partner];
+            final int last = --m_Counts[partner];
+
+            for (int j = 0; j <= last; j++) {
+                if (others[j] == slot) {
+                    others[j] = others[last];
+                    states[j] = states[last];
+                    break;
+                }
+            }
+        }
+
+        m_Counts[slot] = 0;
+    }
+
+    int getMaxState(int slot) {
+        final int[] states = m_States[slot];
+
+        int max = 0;
+        for (int i = 0; i < m_Counts[slot]; i++) {
+            if (states[i] > max)
+                max = states[i];
+        }
+
+        return max;
+    }
+
+    private void add(int slot, int partner, int state) {
+        if (m_Partners[slot] == null) {
+            m_Partners[slot] = new int[INITIAL_PARTNERS];
+            m_States[slot] = new int[INITIAL_PARTNERS];
+        }
+        else if (m_Counts[slot] == m_Partners[slot].length) {
+            m_Partners[slot] = Arrays.copyOf(m_Partners[slot], m_Counts[slot] * 2);
+            m_States[slot] = Arrays.copyOf(m_States[slot], m_Counts[slot] * 2);
+        }
+
+        m_Partners[slot][m_Counts[slot]] = partner;
+        m_States[slot][m_Counts[slot]] = state;
+        m_Counts[slot]++;
+    }
+
+}
@@ -0,0 +1,7 @@
+package Collision;
+
+interface PairVisitor {
+
+    void visit(int a, int b);
+
+}
@@ -0,0 +1,148 @@
+package Collision;
+
+import Traffic.TrafficStore;
+
+import java.util.Arrays;
+
+/**
+ * Uniform horizontal grid over the traffic slots.
+ * Airplanes sharing a cell are chained through {@link #next(int)}; rebuilding the grid
+ * does not allocate once its tables are large enough for the traffic.
+ * With cells as large as the notice distance, candidates are the airplanes of the 3x3 neighbouring cells.
+ */
+class SpatialGrid implements BroadPhase {
+
+    static final int NONE = -1;
+
+    private static final int MIN_TABLE_SIZE = 16;
+
+    private final float m_CellSize;
+
+    private TrafficStore m_Traffic;
+    private int m_SlotCount;
+
+    private long[] m_Keys;
+    private int[] m_Heads;
+    private int[] m_Next;
+    private int m_Mask;
+
+    SpatialGrid(float cellSize) {
+        m_CellSize = cellSize;
+        m_Keys = new long[MIN_TABLE_SIZE];
+        m_Heads = new int[MIN_TABLE_SIZE];
+        m_Next = new int[0];
+        m_Mask = MIN_TABLE_SIZE - 1;
+    }
+
+    @Override
+    public void build(TrafficStore traffic) {
+        final int slotCount = traffic.getSlotCount();
+        ensureCapacity(slotCount);
+
+        m_Traffic = traffic;
+        m_SlotCount = slotCount;
+
+        Arrays.fill(m_Heads, NONE);
+
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (!traffic.isUsed(slot))
+                continue;
+
+            final long key = key(cellOf(traffic.PosX[slot]), cellOf(traffic.PosY[slot]));
+
+            int index = hash(key) & m_Mask;
+            while (m_Heads[index] != NONE && m_Keys[index] != key)
+                index = (index + 1) & m_Mask;
+
+            m_Keys[index] = key;
+            m_Next[slot] = m_Heads[index];
+            m_Heads[index] = slot;
+        }
+    }
+
+    @Override
+    public void forEachPair(int part, int parts, PairVisitor visitor) {
+        final int from = (int) ((long) m_SlotCount * part / parts);
+        final int to = (int) ((long) m_SlotCount * (part + 1) / parts);
+
+        for (int a = from; a < to; a++) {
+            if (!m_Traffic.isUsed(a))
+                continue;
+
+            final int cx = cellOf(m_Traffic.PosX[a]);
+            final int cy = cellOf(m_Traffic.PosY[a]);
+
+            for (int i = -1; i <= 1; i++) {
+                for (int j = -1; j <= 1; j++) {
+                    for (int b = first(cx + i, cy + j); b != NONE; b = next(b)) {
+                        // each unordered pair is reported once, from its lowest slot
+                        if (b > a)
+                            visitor.visit(a, b);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void forEachCandidate(int a, PairVisitor visitor) {
+        final int cx = cellOf(m_Traffic.PosX[a]);
+        final int cy = cellOf(m_Traffic.PosY[a]);
+
+        for (int i = -1; i <= 1; i++) {
+            for (int j = -1; j <= 1; j++) {
+                for (int b = first(cx + i, cy + j); b != NONE; b = next(b)) {
+                    if (b != a)
+                        visitor.visit(a, b);
+                }
+            }
+        }
+    }
+
+    /**
+     * First slot of the given cell, or {@link #NONE} if the cell is empty.
+     */
+    int first(int cx, int cy) {
+        final long key = key(cx, cy);
+
+        for (int index = hash(key) & m_Mask; m_Heads[index] != NONE; index = (index + 1) & m_Mask) {
+            if (m_Keys[index] == key)
+                return m_Heads[index];
+        }
+
+        return NONE;
+    }
+
+    /**
+     * Next slot in the same cell, or {@link #NONE} at the end of the cell.
+     */
+    int next(int slot) {
+        return m_Next[slot];
+    }
+
+    int cellOf(float coordinate) {
+        return (int) Math.floor(coordinate / m_CellSize);
+    }
+
+    private void ensureCapacity(int slotCount) {
+        if (m_Next.length < slotCount)
+            m_Next = new int[Math.max(slotCount, m_Next.length * 2)];
+
+        // keep the table at most half full so probe sequences stay short
+        if (m_Heads.length < slotCount * 2) {
+            final int size = Integer.highestOneBit(slotCount * 2 - 1) << 1;
+            m_Keys = new long[size];
+            m_Heads = new int[size];
+            m_Mask = size - 1;
+        }
+    }
+
+    private static long key(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+    }
+
+    private static int hash(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32);
+    }
+
+}
@@ -0,0 +1,203 @@
+import Collision.CollisionDetection;
+import Constants.Integers;
+import Utils.FixedRate;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The controller without its window: the host, collision detection, and the thread running them at their rates.
+ * Options are named as the JavaFX parameters, {@code --<name>=<value>}, and default to the {@link Integers} constants:
+ * {@code piloting-port}, {@code monitoring-port}, {@code detection-rate} and {@code broadcast-rate} (per second).
+ */
+public class ControllerServer implements Runnable {
+
+    private final Host m_Host;
+    private final CollisionDetection m_CollDetect;
+    private final Thread m_Thread;
+    private volatile boolean m_IsRunning;
+
+    // collision detection and broadcasts run at their own fixed rates on the same thread
+    private final FixedRate m_DetectionRate;
+    private final FixedRate m_BroadcastRate;
+    private boolean m_IsOverBudget;
+
+    private Runnable m_StatusListener;
+
+    public ControllerServer(Map<String, String> options) throws IOException {
+        m_Host = new Host(
+                getInt(options, "piloting-port", Integers.PILOTING_PORT),
+                getInt(options, "monitoring-port", Integers.MONITORING_PORT)
+        );
+
+        m_CollDetect = new CollisionDetection(m_Host.getTraffic());
+        m_CollDetect.setParallelism(Integers.COLLISION_DETECTION_THREADS);
+        m_CollDetect.setTimeBudget(Integers.COLLISION_DETECTION_BUDGET);
+
+        m_DetectionRate = new FixedRate(getRate(options, "detection-rate", Integers.COLLISION_DETECTION_RATE));
+        m_BroadcastRate = new FixedRate(getRate(options, "broadcast-rate", Integers.BROADCAST_RATE));
+        m_IsOverBudget = false;
+
+        m_Thread = new Thread(this, "Controller Ticks");
+        m_IsRunning = false;
+    }
+
+    public Host getHost() {
+        return m_Host;
+    }
+
+    public FixedRate getDetectionRate() {
+        return m_DetectionRate;
+    }
+
+    public FixedRate getBroadcastRate() {
+        return m_BroadcastRate;
+    }
+
+    /**
+     * Called after each broadcast, on the thread running them.
+     */
+    public void setStatusListener(Runnable listener) {
+        m_StatusListener = listener;
+    }
+
+    public void start() throws IOException {
+        if (m_IsRunning)
+            return;
+
+        m_IsRunning = true;
+        m_Host.start();
+        m_Thread.start();
+    }
+
+    public void stop() throws InterruptedException {
+        if (!m_IsRunning)
+            return;
+
+        m_IsRunning = false;
+        m_Thread.interrupt();
+        m_Thread.join();
+        m_Host.stop();
+    }
+
+    @Override
+    public void run() {
+        while (m_IsRunning) {
+            // the reader threads only hand over the reports, the traffic is changed on this thread alone
+            if (m_DetectionRate.isDue(System.nanoTime())) {
+                m_DetectionRate.begin(System.nanoTime());
+                m_Host.extrapolate();
+                m_CollDetect.update();
+
+                if (m_DetectionRate.end(System.nanoTime()))
+                    System.err.println("Collision detection overran its period: took " +
+                            toMillis(m_DetectionRate.getLastDuration()) + " ms of " + toMillis(m_DetectionRate.getPeriod()) +
+                            " ms, " + m_DetectionRate.getSkippedCount() + " updates skipped so far");
+
+                // reported when it starts and ends, the pending pairs are shown with the ticks meanwhile
+                if ((m_CollDetect.getPendingPairs() > 0) != m_IsOverBudget) {
+                    m_IsOverBudget = !m_IsOverBudget;
+                    System.err.println(m_IsOverBudget
+                            ? "Collision detection over budget: " + m_CollDetect.getPendingPairs() + " pairs pending"
+                            : "Collision detection back within budget");
+                }
+            }
+
+            if (m_BroadcastRate.isDue(System.nanoTime())) {
+                m_BroadcastRate.begin(System.nanoTime());
+                m_Host.update();
+                m_Host.broadcastUpdates();
+
+                if (m_BroadcastRate.end(System.nanoTime()))
+                    System.err.println("Broadcast overran its period: took " +
+                            toMillis(m_BroadcastRate.getLastDuration()) + " ms of " + toMillis(m_BroadcastRate.getPeriod()) +
+                            " ms, " + m_BroadcastRate.getSkippedCount() + " broadcasts skipped so far");
+
+                if (m_StatusListener != null)
+                    m_StatusListener.run();
+            }
+
+            // until the next run due, late runs are not caught up but merged
+            final long delay = Math.min(m_DetectionRate.getNext(), m_BroadcastRate.getNext()) - System.nanoTime();
+            if (delay <= 0)
+                continue;
+
+            try {
+                TimeUnit.NANOSECONDS.sleep(delay);
+            }
+            catch (InterruptedException ie) {
+                if (!m_IsRunning)
+                    break;
+            }
+        }
+    }
+
+    /**
+     * State of both schedules, on the thread running them.
+     */
+    public String describeTicks() {
+        String ticks = describe("collision detection", m_DetectionRate);
+        if (m_CollDetect.getPendingPairs() > 0)
+            ticks += ", " + m_CollDetect.getPendingPairs() + " pairs pending, oldest evaluated " +
+                    m_CollDetect.getMaxStaleness() + " ms ago";
+
+        return ticks + ", " + describe("broadcast", m_BroadcastRate);
+    }
+
+    private static String describe(String name, FixedRate rate) {
+        return name + " every " + toMillis(rate.getPeriod()) + " ms, took " + toMillis(rate.getLastDuration()) +
+                " ms (" + toMillis(rate.getMaxDuration()) + " at most), started " + toMillis(rate.getMaxLateness()) +
+                " ms late at most, " + rate.getSkippedCount() + " skipped";
+    }
+
+    private static long toMillis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    /**
+     * Named options of the arguments, {@code --<name>=<value>}; the others are ignored.
+     */
+    public static Map<String, String> parseOptions(String[] args) {
+        final HashMap<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            final int separator = arg.indexOf('=');
+            if (arg.startsWith("--") && separator > 2)
+                options.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+
+        return options;
+    }
+
+    private static int getInt(Map<String, String> options, String name, int defaultValue) {
+        final String value = options.get(name);
+        if (value == null)
+            return defaultValue;
+
+        try {
+            return Integer.parseInt(value.trim());
+        }
+        catch (NumberFormatException nfe) {
+            throw new IllegalArgumentException("Invalid --" + name + ": " + value);
+        }
+    }
+
+    private static double getRate(Map<String, String> options, String name, double defaultValue) {
+        final String value = options.get(name);
+        if (value == null)
+            return defaultValue;
+
+        try {
+            final double rate = Double.parseDouble(value.trim());
+            if (rate > 0)
+                return rate;
+        }
+        catch (NumberFormatException nfe) {
+            // falls through
+        }
+
+        throw new IllegalArgumentException("Invalid --" + name + ": " + value);
+    }
+
+}
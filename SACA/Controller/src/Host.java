@@ -0,0 +1,372 @@
+import Constants.Decimals;
+import Constants.Integers;
+import Entities.IAirplane;
+import Entities.Region;
+import Net.Message;
+import Net.NioReactor;
+import Net.Protocol;
+import Net.SharedBuffer;
+import Net.TcpConnection;
+import Net.TcpListener;
+import Traffic.Extrapolator;
+import Traffic.IngestPipeline;
+import Traffic.RegionIndex;
+import Traffic.TrafficFeed;
+import Traffic.TrafficSnapshot;
+import Traffic.TrafficStore;
+import Utils.RuntimeUtils;
+import Utils.StringUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static Entities.Airplane.FLAG_DISP_HIGHLIGHTED;
+
+/**
+ * Network side of the controller: takes the reports of the pilots, relays the commands of the consoles holding
+ * the lock of their airplane and broadcasts the traffic to the consoles.
+ */
+public class Host {
+
+    // traffic updates not written yet are replaced by the next one
+    private static final int TRAFFIC_UPDATE_KEY = Message.HINT_AIRPLANE_LIST;
+
+    // shared with the I/O threads
+    private final ConcurrentHashMap<String, TcpConnection> m_Connections;
+    private final ConcurrentHashMap<TcpConnection, String> m_AirplaneIds; // reverse index of the pilot connections
+    private final ConcurrentHashMap<String, TcpConnection> m_CommandConsoles;
+    private final Set<TcpConnection> m_Monitors;
+    private final Set<TcpConnection> m_Unsynced; // monitors to send a snapshot instead of the next delta
+    private final ConcurrentHashMap<TcpConnection, Region> m_Subscriptions;
+    private final Extrapolator m_Extrapolator;
+    private final IngestPipeline m_Ingest;
+    private volatile boolean m_IsRunning;
+
+    // only used by the thread running collision detection and broadcasts
+    private final HashMap<String, IAirplane> m_Airplanes;
+    private final TrafficStore m_Traffic;
+    private final TrafficFeed m_AllTraffic;
+    private final HashMap<Region, TrafficFeed> m_Feeds; // one per region subscribed to
+    private final HashMap<TcpConnection, TrafficFeed> m_MonitorFeeds; // feed of the last update sent to each monitor
+    private final RegionIndex m_Regions;
+
+    // broadcast messages, reused once every monitor wrote them
+    private final SharedBuffer.Pool m_BroadcastBuffers = new SharedBuffer.Pool();
+
+    // connections of both listeners are served by the same I/O threads
+    private final NioReactor m_Reactor = new NioReactor(Integers.NET_IO_THREADS);
+    private final TcpListener m_AirplaneListener;
+    private final TcpListener m_ConsoleListener;
+
+    public Host(int pilotingPort, int monitoringPort) throws IOException {
+        m_Connections = new ConcurrentHashMap<>();
+        m_AirplaneIds = new ConcurrentHashMap<>();
+        m_CommandConsoles = new ConcurrentHashMap<>();
+        m_Monitors = ConcurrentHashMap.newKeySet();
+        m_Unsynced = ConcurrentHashMap.newKeySet();
+        m_Subscriptions = new ConcurrentHashMap<>();
+        m_Extrapolator = new Extrapolator();
+        m_Ingest = new IngestPipeline(Integers.INGEST_PARSER_THREADS, Integers.INGEST_QUEUE_SIZE, new ReportHandler());
+        m_IsRunning = false;
+
+        m_Airplanes = new HashMap<>();
+        m_Traffic = new TrafficStore();
+        m_AllTraffic = new TrafficFeed(null);
+        m_Feeds = new HashMap<>();
+        m_MonitorFeeds = new HashMap<>();
+        m_Regions = new RegionIndex(Decimals.MAP_WIDTH, Decimals.MAP_HEIGHT);
+
+        m_AirplaneListener = new AirplaneListener(pilotingPort);
+        m_ConsoleListener = new ConsoleListener(monitoringPort);
+    }
+
+    public int getPilotingPort() {
+        return m_AirplaneListener.Port;
+    }
+
+    public int getMonitoringPort() {
+        return m_ConsoleListener.Port;
+    }
+
+    public TrafficStore getTraffic() {
+        return m_Traffic;
+    }
+
+    public IngestPipeline getIngest() {
+        return m_Ingest;
+    }
+
+    /**
+     * Last published snapshot of the pilot reports, from any thread.
+     */
+    public TrafficSnapshot getSnapshot() {
+        return m_Extrapolator.getSnapshot();
+    }
+
+    public void start() throws IOException {
+        if (m_IsRunning)
+            return;
+
+        m_IsRunning = true;
+        m_Ingest.start();
+        m_Reactor.start();
+        m_AirplaneListener.startListening();
+        m_ConsoleListener.startListening();
+    }
+
+    public void stop() {
+        if (!m_IsRunning)
+            return;
+
+        m_IsRunning = false;
+        m_AirplaneListener.stopListening();
+        m_ConsoleListener.stopListening();
+        m_Ingest.stop();
+
+        new ArrayList<>(m_Monitors).forEach(TcpConnection::close);
+        new ArrayList<>(m_Connections.values()).forEach(TcpConnection::close);
+
+        m_Monitors.clear();
+        m_Unsynced.clear();
+        m_Subscriptions.clear();
+        m_Connections.clear();
+        m_AirplaneIds.clear();
+
+        m_Reactor.stop();
+    }
+
+    /**
+     * Publishes a snapshot of the last reports and moves the airplanes to where they are now; their pilots only
+     * report once they stop flying straight. Reports received meanwhile go to the next snapshot.
+     */
+    public void extrapolate() {
+        final TrafficSnapshot snapshot = m_Extrapolator.capture(now());
+        m_Extrapolator.update(snapshot, m_Airplanes, m_Traffic);
+    }
+
+    public void update() {
+        // update display states
+        final int slotCount = m_Traffic.getSlotCount();
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (!m_Traffic.isUsed(slot))
+                continue;
+
+            if (m_CommandConsoles.containsKey(m_Traffic.getAirplane(slot).getId()))
+                m_Traffic.setDispState(slot, FLAG_DISP_HIGHLIGHTED);
+            else
+                m_Traffic.setDispState(slot, 0);
+        }
+    }
+
+    public void broadcastUpdates() {
+        // feeds of the regions subscribed to, those no longer subscribed to are dropped
+        final HashMap<TcpConnection, TrafficFeed> feeds = new HashMap<>(m_Monitors.size() * 2);
+        for (TcpConnection monitor : m_Monitors) {
+            final Region region = m_Subscriptions.get(monitor);
+            feeds.put(monitor, region == null ? m_AllTraffic : m_Feeds.computeIfAbsent(region, TrafficFeed::new));
+        }
+
+        m_Feeds.values().retainAll(feeds.values());
+
+        if (!m_Feeds.isEmpty())
+            m_Regions.build(m_Traffic);
+
+        // each feed is updated, then encoded at most once for each protocol, whatever the number of its monitors
+        m_AllTraffic.update(m_Airplanes.values(), m_Regions);
+        for (TrafficFeed feed : m_Feeds.values())
+            feed.update(m_Airplanes.values(), m_Regions);
+
+        for (Map.Entry<TcpConnection, TrafficFeed> entry : feeds.entrySet()) {
+            final TcpConnection monitor = entry.getKey();
+            final TrafficFeed feed = entry.getValue();
+            final int protocol = monitor.getProtocol();
+
+            // a slow monitor gets a snapshot in place of the update it did not write yet, deltas do not add up;
+            // so does a monitor whose subscription changed, the deltas of the new feed not applying to its state
+            final boolean unsynced = m_Unsynced.remove(monitor);
+
+            if (unsynced || m_MonitorFeeds.get(monitor) != feed || monitor.isQueued(TRAFFIC_UPDATE_KEY))
+                monitor.send(feed.getSnapshot(protocol, m_BroadcastBuffers), TRAFFIC_UPDATE_KEY);
+            else if (feed.hasChanges())
+                monitor.send(feed.getDelta(protocol, m_BroadcastBuffers), TRAFFIC_UPDATE_KEY);
+        }
+
+        m_MonitorFeeds.clear();
+        m_MonitorFeeds.putAll(feeds);
+
+        // a console drops the locks of the airplanes it no longer receives
+        m_CommandConsoles.entrySet().removeIf(lock -> {
+            final TrafficFeed feed = m_MonitorFeeds.get(lock.getValue());
+            return feed != null && !feed.contains(lock.getKey());
+        });
+
+        // the monitors hold their own references until written
+        m_AllTraffic.release();
+        m_Feeds.values().forEach(TrafficFeed::release);
+    }
+
+    /**
+     * Sends the monitor only the airplanes inside the region, from a snapshot on; the whole traffic if there is none.
+     */
+    private void subscribe(TcpConnection monitor, String data) {
+        if (StringUtils.isNullOrWhitespace(data)) {
+            m_Subscriptions.remove(monitor);
+            return;
+        }
+
+        final Region region = Region.fromString(data);
+        if (region != null)
+            m_Subscriptions.put(monitor, region);
+    }
+
+    private long now() {
+        return System.nanoTime() / 1000000;
+    }
+
+    private class AirplaneListener extends TcpListener {
+
+        private AirplaneListener(int port) throws IOException {
+            super(port, Integers.SOCKET_TIMEOUT, m_Reactor);
+        }
+
+        @Override
+        public void onReceiveNewConnection(TcpConnection connection) {
+        }
+
+        // the reports are only copied here, and decoded on the parser threads
+        @Override
+        public void onReceiveMessage(TcpConnection connection, String message) {
+            if (!m_IsRunning) return;
+
+            m_Ingest.offer(connection, message, now());
+        }
+
+        @Override
+        public void onReceiveFrame(TcpConnection connection, int type, ByteBuffer payload) {
+            if (!m_IsRunning || type != Protocol.FRAME_AIRPLANE) return;
+
+            m_Ingest.offer(connection, payload, now());
+        }
+
+        @Override
+        public void onCloseConnection(TcpConnection connection) {
+            if (!m_IsRunning) return;
+
+            m_Ingest.close(connection);
+        }
+
+    }
+
+    private class ReportHandler implements IngestPipeline.Handler {
+
+        @Override
+        public void onReport(TcpConnection connection, String id, TrafficSnapshot.Report report) {
+            if (m_AirplaneIds.putIfAbsent(connection, id) == null)
+                m_Connections.put(id, connection);
+
+            m_Extrapolator.report(id, report);
+        }
+
+        @Override
+        public void onClose(TcpConnection connection) {
+            final String id = m_AirplaneIds.remove(connection);
+            if (id != null && m_Connections.remove(id, connection))
+                m_Extrapolator.remove(id);
+        }
+
+    }
+
+    private class ConsoleListener extends TcpListener {
+
+        private ConsoleListener(int port) throws IOException {
+            super(port, Integers.SOCKET_TIMEOUT, m_Reactor);
+        }
+
+        @Override
+        public void onReceiveNewConnection(TcpConnection connection) {
+            connection.setQueueLimit(Integers.NET_QUEUE_LIMIT, TcpConnection.OVERFLOW_DROP_OLDEST);
+
+            m_Unsynced.add(connection);
+            m_Monitors.add(connection);
+        }
+
+        @Override
+        public void onReceiveMessage(TcpConnection connection, String message) {
+            if (Message.isMessage(message)) {
+                final Message msg = Message.fromString(message);
+                assert msg != null;
+
+                onReceiveMessage(connection, msg);
+            }
+        }
+
+        @Override
+        public void onReceiveFrame(TcpConnection connection, int type, ByteBuffer payload) {
+            if (type != Protocol.FRAME_MESSAGE) return;
+
+            onReceiveMessage(connection, Message.fromFrame(payload));
+        }
+
+        private void onReceiveMessage(TcpConnection connection, Message msg) {
+            if (RuntimeUtils.isFlagSet(msg.Hint, Message.HINT_RESYNC)) {
+                m_Unsynced.add(connection);
+            }
+
+            if (RuntimeUtils.isFlagSet(msg.Hint, Message.HINT_SUBSCRIBE)) {
+                subscribe(connection, msg.Data);
+            }
+
+            if (RuntimeUtils.isFlagSet(msg.Hint, Message.HINT_LOCK)) {
+                if (!StringUtils.isNullOrWhitespace(msg.To)) {
+                    if (m_Extrapolator.getSnapshot().contains(msg.To) && m_CommandConsoles.putIfAbsent(msg.To, connection) == null) {
+                        connection.send(new Message(Message.HINT_LOCK_ACK, null, msg.From, msg.To));
+                    }
+                    else {
+                        connection.send(new Message(Message.HINT_ALERT, "Action denied"));
+                    }
+                }
+            }
+
+            if (RuntimeUtils.isFlagSet(msg.Hint, Message.HINT_COMMAND)) {
+                if (!StringUtils.isNullOrWhitespace(msg.To)) {
+                    final TcpConnection cnx = m_CommandConsoles.get(msg.To);
+                    if (cnx == connection) {
+                        final TcpConnection destConnection = m_Connections.get(msg.To);
+                        if (destConnection != null) {
+                            destConnection.send(msg.Data);
+                        }
+                    }
+                    else {
+                        connection.send(new Message(Message.HINT_ALERT, "Action denied"));
+                    }
+                }
+            }
+
+            if (RuntimeUtils.isFlagSet(msg.Hint, Message.HINT_RELEASE)) {
+                if (!StringUtils.isNullOrWhitespace(msg.To)) {
+                    if (m_CommandConsoles.remove(msg.To, connection)) {
+                        connection.send(new Message(Message.HINT_RELEASE_ACK, null, msg.From, msg.To));
+                    }
+                    else {
+                        connection.send(new Message(Message.HINT_ALERT, "Action denied"));
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void onCloseConnection(TcpConnection connection) {
+            m_Monitors.remove(connection);
+            m_Unsynced.remove(connection);
+            m_Subscriptions.remove(connection);
+            m_CommandConsoles.values().removeIf(console -> console == connection);
+        }
+
+    }
+
+}
@@ -1,14 +1,7 @@
-import Constants.Integers;
-import Entities.Airplane;
-import Entities.IAirplane;
-import FMath.Ray;
-import FMath.Vector3;
-import Net.Message;
-import Net.TcpConnection;
-import Net.TcpListener;
-import Utils.RuntimeUtils;
-import Utils.StringUtils;
+import Traffic.IngestPipeline;
+import Traffic.TrafficSnapshot;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
@@ -16,37 +9,24 @@ import javafx.scene.layout.GridPane;
 import javafx.scene.text.Text;
 import javafx.stage.Stage;
 
-import java.io.IOException;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Set;
-
-import static Entities.Airplane.FLAG_DISP_HIGHLIGHTED;
-
 /**
  * Created by Mike on 7/6/2017.
  */
-public class SACAController extends Application implements Runnable {
-
-    private CollisionDetection m_CollDetect;
-    private Host m_Host;
-    private Thread m_BroadcastThread;
-    private boolean m_IsRunning;
+public class SACAController extends Application {
 
-    private final Object m_Mutex = new Object();
+    private ControllerServer m_Server;
+    private ViewController m_ViewController;
 
     @Override
     public void init() throws Exception {
-        m_CollDetect = new CollisionDetection();
-        m_Host = new Host();
-        m_BroadcastThread = new Thread(this);
-        m_IsRunning = false;
+        m_Server = new ControllerServer(getParameters().getNamed());
     }
 
     @Override
     public void start(Stage primaryStage) throws Exception {
         final FXMLLoader loader = new FXMLLoader(getClass().getResource("/Resources/Layout/main.fxml"));
-        loader.setController(new ViewController());
+        m_ViewController = new ViewController();
+        loader.setController(m_ViewController);
 
         GridPane root = loader.load();
         Scene scene = new Scene(root);
@@ -54,333 +34,82 @@ public class SACAController extends Application implements Runnable {
         primaryStage.setScene(scene);
         primaryStage.show();
 
-        m_IsRunning = true;
-
-        m_Host.start();
-        m_BroadcastThread.start();
+        m_Server.setStatusListener(this::showStatus);
+        m_Server.start();
     }
 
     @Override
     public void stop() throws Exception {
-        m_IsRunning = false;
-        m_BroadcastThread.interrupt();
-        m_BroadcastThread.join();
-        m_Host.stop();
+        m_Server.stop();
     }
 
-    @Override
-    public void run() {
-        while (m_IsRunning) {
-            synchronized (m_Mutex) {
-                m_CollDetect.update();
-                m_Host.update();
-                m_Host.broadcastUpdates();
-            }
+    private void showStatus() {
+        final Host host = m_Server.getHost();
+        final TrafficSnapshot snapshot = host.getSnapshot();
+        final String ticks = m_Server.describeTicks();
 
-            try {
-                Thread.sleep(1000);
-            }
-            catch (InterruptedException ie) {
-                if (!m_IsRunning)
-                    break;
-            }
-        }
+        Platform.runLater(() -> {
+            m_ViewController.showSnapshot(snapshot);
+            m_ViewController.showIngest(host.getIngest());
+            m_ViewController.showTicks(ticks);
+        });
     }
 
-    private class Host {
-
-        private final HashMap<String, IAirplane> m_Airplanes;
-        private final HashMap<String, TcpConnection> m_Connections;
-        private final HashMap<String, TcpConnection> m_CommandConsoles;
-        private final Set<TcpConnection> m_Monitors;
-        private boolean m_IsRunning;
-
-        private final TcpListener m_AirplaneListener = new TcpListener(Integers.PILOTING_PORT) {
-            @Override
-            public void onReceiveNewConnection(TcpConnection connection) {
-            }
-
-            @Override
-            public void onReceiveMessage(TcpConnection connection, String message) {
-                if (!m_IsRunning) return;
-
-                synchronized (m_Mutex) {
-                    final IAirplane airplane = Airplane.fromString(message);
-                    if (airplane != null) {
-                        if (!m_Airplanes.containsKey(airplane.getId())) {
-                            m_Airplanes.put(airplane.getId(), airplane);
-                            m_Connections.put(airplane.getId(), connection);
-                        }
-                        else {
-                            m_Airplanes
-                                    .get(airplane.getId())
-                                    .setPosition(airplane.getPosition())
-                                    .setRoll(airplane.getRoll())
-                                    .setPitch(airplane.getPitch())
-                                    .setYaw(airplane.getYaw())
-                                    .setSpeed(airplane.getSpeed());
-                        }
-                    }
-                }
-            }
-
-            @Override
-            public void onCloseConnection(TcpConnection connection) {
-                if (!m_IsRunning) return;
-
-                synchronized (m_Mutex) {
-                    m_Connections.keySet()
-                            .stream()
-                            .filter(key -> m_Connections.get(key) == connection)
-                            .findFirst()
-                            .ifPresent(key -> {
-                                m_Airplanes.remove(key);
-                                m_Connections.remove(key);
-                            });
-                }
-            }
-        };
-
-        private final TcpListener m_ConsoleListener = new TcpListener(Integers.MONITORING_PORT) {
-            @Override
-            public void onReceiveNewConnection(TcpConnection connection) {
-                m_Monitors.add(connection);
-            }
-
-            @Override
-            public void onReceiveMessage(TcpConnection connection, String message) {
-                synchronized (m_Mutex) {
-                    if (Message.isMessage(message)) {
-                        final Message msg = Message.fromString(message);
-                        assert msg != null;
-
-                        if (RuntimeUtils.isFlagSet(msg.Hint, Message.HINT_LOCK)) {
-                            if (!StringUtils.isNullOrWhitespace(msg.To)) {
-                                if (m_Airplanes.containsKey(msg.To) && !m_CommandConsoles.containsKey(msg.To)) {
-                                    m_CommandConsoles.put(msg.To, connection);
-                                    connection.send(new Message(Message.HINT_LOCK_ACK, null, msg.From, msg.To).toString());
-                                }
-                                else {
-                                    connection.send(new Message(Message.HINT_ALERT, "Action denied").toString());
-                                }
-                            }
-                        }
-
-                        if (RuntimeUtils.isFlagSet(msg.Hint, Message.HINT_COMMAND)) {
-                            if (!StringUtils.isNullOrWhitespace(msg.To)) {
-                                final TcpConnection cnx = m_CommandConsoles.get(msg.To);
-                                if (cnx == connection) {
-                                    final TcpConnection destConnection = m_Connections.get(msg.To);
-                                    if (destConnection != null) {
-                                        destConnection.send(msg.Data);
-                                    }
-                                }
-                                else {
-                                    connection.send(new Message(Message.HINT_ALERT, "Action denied").toString());
-                                }
-                            }
-                        }
-
-                        if (RuntimeUtils.isFlagSet(msg.Hint, Message.HINT_RELEASE)) {
-                            if (!StringUtils.isNullOrWhitespace(msg.To)) {
-                                if (m_CommandConsoles.get(msg.To) == connection) {
-                                    m_CommandConsoles.remove(msg.To);
-                                    connection.send(new Message(Message.HINT_RELEASE_ACK, null, msg.From, msg.To).toString());
-                                }
-                                else {
-                                    connection.send(new Message(Message.HINT_ALERT, "Action denied").toString());
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-
-            @Override
-            public void onCloseConnection(TcpConnection connection) {
-                synchronized (m_Mutex) {
-                    m_Monitors.remove(connection);
-                    m_CommandConsoles.values().remove(connection);
-                }
-            }
-        };
-
-        private Host() throws IOException {
-            m_Airplanes = new HashMap<>();
-            m_Connections = new HashMap<>();
-            m_CommandConsoles = new HashMap<>();
-            m_Monitors = new HashSet<>();
-            m_IsRunning = false;
-        }
-
-        private void start() {
-            if (m_IsRunning)
-                return;
-
-            m_IsRunning = true;
-            m_AirplaneListener.startListening();
-            m_ConsoleListener.startListening();
-        }
-
-        private void stop() {
-            if (!m_IsRunning)
-                return;
+    public class ViewController {
 
-            m_IsRunning = false;
-            m_AirplaneListener.stopListening();
-            m_ConsoleListener.stopListening();
+        @FXML
+        private Text m_TextPilotingPort;
+        @FXML
+        private Text m_TextMonitoringPort;
+        @FXML
+        private Text m_TextSnapshot;
+        @FXML
+        private Text m_TextIngest;
+        @FXML
+        private Text m_TextTicks;
 
-            m_Monitors.forEach(TcpConnection::close);
-            m_Connections.values().forEach(TcpConnection::close);
+        // counters at the last refresh, for the rates
+        private long m_ReceivedCount;
+        private long m_ParsedCount;
+        private long m_IngestTime;
 
-            m_Monitors.clear();
-            m_Connections.clear();
+        @FXML
+        public void initialize() {
+            m_TextPilotingPort.setText(Integer.toString(m_Server.getHost().getPilotingPort()));
+            m_TextMonitoringPort.setText(Integer.toString(m_Server.getHost().getMonitoringPort()));
         }
 
-        private void update() {
-            // update display states
-            for(IAirplane ap : m_Airplanes.values()) {
-                if (m_CommandConsoles.containsKey(ap.getId()))
-                    ap.setDispState(FLAG_DISP_HIGHLIGHTED);
-                else
-                    ap.setDispState(0);
-            }
+        private void showSnapshot(TrafficSnapshot snapshot) {
+            m_TextSnapshot.setText(snapshot.size() + " airplanes, " + snapshot.FreshCount + " new reports, copied in " +
+                    snapshot.CopyTime / 1000 + " \u00b5s, published " + snapshot.MaxLatency + " ms at most after receipt");
         }
 
-        private void broadcastUpdates() {
-            synchronized (m_Mutex) {
-                final StringBuilder sb = new StringBuilder();
-                m_Airplanes.forEach((k, p) -> sb.append(p));
-
-                final Message message = new Message(Message.HINT_AIRPLANE_LIST, sb.toString());
-                for (TcpConnection monitor : m_Monitors) {
-                    monitor.send(message.toString());
-                }
-            }
+        private void showTicks(String ticks) {
+            m_TextTicks.setText(ticks);
         }
 
-    }
-
-    private class CollisionDetection {
-
-        private static final float VERTICAL_NOTICE_DISTANCE        = 0.4572f;  //  km (equiv to 1500 feet)
-        private static final float HORIZONTAL_NOTICE_DISTANCE      = 15.0f;    // km
-        private static final float VERTICAL_DISTURBANCE_DISTANCE   = 0.3048f;  // km (equiv to 1000 feet)
-        private static final float HORIZONTAL_DISTURBANCE_DISTANCE = 9.0f;     // km
-        private static final float VERTICAL_PANIC_DISTANCE         = 0.15f;    // km
-        private static final float HORIZONTAL_PANIC_DISTANCE       = 1.0f;     // km
-        private static final float FATAL_DISTANCE                  = 0.05f;    // km (equiv to 50 meters)
-
-        private void update() {
-            // clear states
-            for (IAirplane ap : m_Host.m_Airplanes.values())
-                ap.setCdState(0);
-
-            // update states
-            for (IAirplane target : m_Host.m_Airplanes.values()) {
-                final Ray ray1 = target.getRay();
-
-                for (IAirplane other : m_Host.m_Airplanes.values()) {
-                    if (target == other) // skip collision test with self
-                        continue;
-
-                    int flag = 0;
-
-                    final Vector3 pos1 = target.getPosition();
-                    final Vector3 pos2 = other.getPosition();
-
-                    final float posDistance = Vector3.distance(pos1, pos2);
-                    final float posXyDistance = Vector3.xyDistance(pos1, pos2);
-                    final float posZDistance = Math.abs(target.getAltitude() - other.getAltitude());
-
-                    if (posXyDistance <= HORIZONTAL_DISTURBANCE_DISTANCE &&
-                        posZDistance <= VERTICAL_DISTURBANCE_DISTANCE)
-                        flag = Airplane.FLAG_CD_WARN;
-
-                    final Ray ray2 = other.getRay();
-
-                    final Vector3 r1Cp = ray1.nearestPointToRay(ray2);
-                    final Vector3 r2Cp = ray2.nearestPointToRay(ray1);
-
-                    boolean willCross = false;
-
-                    // collision point is null if both rays are collinear
-                    if (r1Cp != null && r2Cp != null) {
-                        // direction towards nearest point
-                        Vector3 d1 = Vector3.subtract(r1Cp, ray1.getPosition());
-                        Vector3 d2 = Vector3.subtract(r2Cp, ray2.getPosition());
-
-                        final float dot1 = Vector3.dot(d1, ray1.getDirection());
-                        final float dot2 = Vector3.dot(d2, ray2.getDirection());
-
-                        // the dot product is positive if the ray direction
-                        // and collision position vectors point in the same direction
-                        willCross = dot1 > 0 && dot2 > 0;
-
-                        // add the factor of speed
-                        if (willCross) {
-                            final float f1 = Vector3.subtract(r1Cp, pos1).getLength() / Math.max(target.getSpeed(), 0.1f);
-                            final float f2 = Vector3.subtract(r2Cp, pos2).getLength() / Math.max(target.getSpeed(), 0.1f);
-                            willCross = Math.abs(f1 - f2) * 3600 <= 30;
-                        }
-                    }
-
-                    if (willCross) {
-                        final float pathXyDistance = Vector3.xyDistance(r1Cp, r2Cp);
-                        final float pathZDistance = Vector3.zDistance(r1Cp, r2Cp);
-
-                        if (flag == Airplane.FLAG_CD_WARN) {
-                            if (pathXyDistance <= HORIZONTAL_PANIC_DISTANCE && pathZDistance <= VERTICAL_PANIC_DISTANCE)
-                                flag = Airplane.FLAG_CD_PANIC;
-                        }
-                        else {
-                            final boolean notice = posZDistance <= VERTICAL_NOTICE_DISTANCE && posXyDistance <= HORIZONTAL_NOTICE_DISTANCE;
-
-                            if (notice) {
-                                if (posZDistance <= 0.1524) { // same vertical flight level
-                                    if (pathXyDistance < HORIZONTAL_DISTURBANCE_DISTANCE) {
-                                        flag = Airplane.FLAG_CD_WARN;
-                                    }
-                                }
-                                else {
-                                    if (pathZDistance < VERTICAL_DISTURBANCE_DISTANCE) {
-                                        flag = Airplane.FLAG_CD_WARN;
-                                    }
-                                }
-                            }
-                        }
-                    }
-
-                    if (posDistance < FATAL_DISTANCE) {
-                        //todo
-                    }
-
-                    if (flag > target.getCdState()) {
-                        target.setCdState(flag);
-                    }
-                }
+        private void showIngest(IngestPipeline ingest) {
+            final long time = System.nanoTime();
+            final long received = ingest.getReceivedCount();
+            final long parsed = ingest.getParsedCount();
+
+            if (m_IngestTime != 0) {
+                final double seconds = (time - m_IngestTime) / 1e9;
+                m_TextIngest.setText(ingest.getDepth() + "/" + ingest.getCapacity() + " queued (" + ingest.getMaxDepth() +
+                        " at most), " + Math.round((received - m_ReceivedCount) / seconds) + " received/s, " +
+                        Math.round((parsed - m_ParsedCount) / seconds) + " parsed/s, " + ingest.getDroppedCount() +
+                        " dropped, " + ingest.getInvalidCount() + " invalid");
             }
-        }
-
-    }
-
-    public class ViewController {
-
-        @FXML
-        private Text m_TextPilotingPort;
-        @FXML
-        private Text m_TextMonitoringPort;
 
-        @FXML
-        public void initialize() {
-            m_TextPilotingPort.setText(Integer.toString(Constants.Integers.PILOTING_PORT));
-            m_TextMonitoringPort.setText(Integer.toString(Constants.Integers.MONITORING_PORT));
+            m_ReceivedCount = received;
+            m_ParsedCount = parsed;
+            m_IngestTime = time;
         }
 
     }
 
     public static void main(String[] args) {
-        launch();
+        launch(args);
     }
 
 }
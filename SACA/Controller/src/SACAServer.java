@@ -0,0 +1,42 @@
+import java.lang.management.ManagementFactory;
+
+/**
+ * Headless entry point of the controller, for servers: runs the host, collision detection and the ticks without
+ * starting JavaFX or loading any window. Takes the options of {@link ControllerServer}, e.g.
+ * {@code --piloting-port=15500 --monitoring-port=15501 --detection-rate=4 --broadcast-rate=1}.
+ */
+public class SACAServer {
+
+    public static void main(String[] args) throws Exception {
+        final ControllerServer server;
+        try {
+            server = new ControllerServer(ControllerServer.parseOptions(args));
+        }
+        catch (IllegalArgumentException iae) {
+            System.err.println(iae.getMessage());
+            System.err.println("Options: --piloting-port=<port> --monitoring-port=<port> " +
+                    "--detection-rate=<per second> --broadcast-rate=<per second>");
+            System.exit(1);
+            return;
+        }
+
+        server.start();
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.stop();
+            }
+            catch (InterruptedException ie) {
+                // do nothing
+            }
+        }));
+
+        final Runtime runtime = Runtime.getRuntime();
+        final long startup = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+
+        System.out.println("Controller listening for pilots on port " + server.getHost().getPilotingPort() +
+                " and consoles on port " + server.getHost().getMonitoringPort() + ", started in " + startup + " ms, " +
+                (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024) + " MB of heap in use");
+    }
+
+}
@@ -0,0 +1,172 @@
+package Traffic;
+
+import Entities.IAirplane;
+import FMath.Vector3;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * States of the airplanes as last broadcast to the consoles, so that only what changed since is sent.
+ * Every update with changes gets the next sequence number; a console applying the deltas in order holds these states,
+ * within the tolerances.
+ */
+public class DeltaTracker {
+
+    private static final float DEFAULT_POSITION_TOLERANCE = 0.05f; // km, about a quarter of a pixel on the map
+    private static final float DEFAULT_ANGLE_TOLERANCE    = 0.5f;  // degrees
+    private static final float DEFAULT_SPEED_TOLERANCE    = 1.0f;  // km/h
+
+    private final HashMap<String, State> m_States;
+    private final List<IAirplane> m_Changed;
+    private final List<String> m_Removed;
+    private long m_Sequence;
+    private long m_UpdateCount;
+
+    private float m_PositionTolerance;
+    private float m_AngleTolerance;
+    private float m_SpeedTolerance;
+
+    public DeltaTracker() {
+        m_States = new HashMap<>();
+        m_Changed = new ArrayList<>();
+        m_Removed = new ArrayList<>();
+        m_Sequence = 0;
+        m_UpdateCount = 0;
+
+        setTolerances(DEFAULT_POSITION_TOLERANCE, DEFAULT_ANGLE_TOLERANCE, DEFAULT_SPEED_TOLERANCE);
+    }
+
+    /**
+     * Smaller changes are not broadcast; the consoles keep the previous state until the difference grows beyond them.
+     * Flag changes are always broadcast.
+     */
+    public void setTolerances(float position, float angle, float speed) {
+        m_PositionTolerance = position;
+        m_AngleTolerance = angle;
+        m_SpeedTolerance = speed;
+    }
+
+    /**
+     * Compares the airplanes to their last broadcast states and takes the states of those added or changed.
+     * The airplanes missing from the collection are removed.
+     * @return whether anything changed, in which case the sequence number was incremented
+     */
+    public boolean update(Collection<? extends IAirplane> airplanes) {
+        m_Changed.clear();
+        m_Removed.clear();
+        m_UpdateCount++;
+
+        for (IAirplane airplane : airplanes) {
+            State state = m_States.get(airplane.getId());
+
+            if (state == null) {
+                state = new State();
+                m_States.put(airplane.getId(), state);
+                state.set(airplane);
+                m_Changed.add(airplane);
+            }
+            else if (hasChanged(state, airplane)) {
+                state.set(airplane);
+                m_Changed.add(airplane);
+            }
+
+            state.m_LastSeen = m_UpdateCount;
+        }
+
+        if (m_States.size() > airplanes.size()) {
+            final Iterator<HashMap.Entry<String, State>> it = m_States.entrySet().iterator();
+            while (it.hasNext()) {
+                final HashMap.Entry<String, State> entry = it.next();
+                if (entry.getValue().m_LastSeen != m_UpdateCount) {
+                    m_Removed.add(entry.getKey());
+                    it.remove();
+                }
+            }
+        }
+
+        if (!hasChanges())
+            return false;
+
+        m_Sequence++;
+        return true;
+    }
+
+    public boolean hasChanges() {
+        return !m_Changed.isEmpty() || !m_Removed.isEmpty();
+    }
+
+    /**
+     * Whether the airplane was in the last update.
+     */
+    public boolean contains(String id) {
+        return m_States.containsKey(id);
+    }
+
+    /**
+     * Sequence number of the last update with changes, 0 before the first one.
+     */
+    public long getSequence() {
+        return m_Sequence;
+    }
+
+    /**
+     * Airplanes added or changed by the last update.
+     */
+    public List<IAirplane> getChanged() {
+        return m_Changed;
+    }
+
+    /**
+     * Ids of the airplanes removed by the last update.
+     */
+    public List<String> getRemoved() {
+        return m_Removed;
+    }
+
+    private boolean hasChanged(State state, IAirplane airplane) {
+        final Vector3 position = airplane.getPosition();
+
+        final float dx = position.X - state.m_X;
+        final float dy = position.Y - state.m_Y;
+        final float dz = position.Z - state.m_Z;
+
+        return state.m_Flags != (airplane.getCdState() | airplane.getDispState()) ||
+               dx * dx + dy * dy + dz * dz > m_PositionTolerance * m_PositionTolerance ||
+               TrafficStore.angleDistance(airplane.getYaw(), state.m_Yaw) > m_AngleTolerance ||
+               TrafficStore.angleDistance(airplane.getPitch(), state.m_Pitch) > m_AngleTolerance ||
+               TrafficStore.angleDistance(airplane.getRoll(), state.m_Roll) > m_AngleTolerance ||
+               Math.abs(airplane.getSpeed() - state.m_Speed) > m_SpeedTolerance;
+    }
+
+    private static class State {
+
+        private float m_X;
+        private float m_Y;
+        private float m_Z;
+        private float m_Roll;
+        private float m_Pitch;
+        private float m_Yaw;
+        private float m_Speed;
+        private int m_Flags;
+        private long m_LastSeen;
+
+        private void set(IAirplane airplane) {
+            final Vector3 position = airplane.getPosition();
+
+            m_X = position.X;
+            m_Y = position.Y;
+            m_Z = position.Z;
+            m_Roll = airplane.getRoll();
+            m_Pitch = airplane.getPitch();
+            m_Yaw = airplane.getYaw();
+            m_Speed = airplane.getSpeed();
+            m_Flags = airplane.getCdState() | airplane.getDispState();
+        }
+
+    }
+
+}
@@ -0,0 +1,118 @@
+package Traffic;
+
+import Entities.Airplane;
+import Entities.IAirplane;
+import FMath.Vector3;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Last reports of the pilots and dead reckoning of the tracked airplanes between them: each one keeps flying straight
+ * from its last reported state, as the pilots assume when deciding whether to report, so that collision detection
+ * works on current positions.
+ * <p>
+ * Reports are taken from any thread as immutable states, each replacing the previous one of its airplane. At the start
+ * of a tick, {@link #capture(long)} copies the last ones into a {@link TrafficSnapshot} and publishes it; the tracked
+ * airplanes and the store are then only changed from that snapshot, on the thread running collision detection
+ * and broadcasts. Neither side waits for the other.
+ */
+public class Extrapolator {
+
+    private final ConcurrentHashMap<String, TrafficSnapshot.Report> m_Reports;
+    private volatile TrafficSnapshot m_Snapshot;
+
+    private final Vector3 m_Position;
+
+    public Extrapolator() {
+        m_Reports = new ConcurrentHashMap<>();
+        m_Snapshot = TrafficSnapshot.empty();
+        m_Position = new Vector3();
+    }
+
+    /**
+     * Takes the report of the airplane in place of its previous one.
+     */
+    public void report(String id, TrafficSnapshot.Report report) {
+        m_Reports.put(id, report);
+    }
+
+    public void remove(String id) {
+        m_Reports.remove(id);
+    }
+
+    /**
+     * Copies the last report of every airplane into a snapshot and publishes it, in place of the previous one.
+     */
+    public TrafficSnapshot capture(long now) {
+        final long start = System.nanoTime();
+        final TrafficSnapshot previous = m_Snapshot;
+        final HashMap<String, TrafficSnapshot.Report> reports = new HashMap<>(Math.max(16, m_Reports.size() * 4 / 3 + 1));
+
+        int freshCount = 0;
+        long maxLatency = 0;
+        long totalLatency = 0;
+
+        for (Map.Entry<String, TrafficSnapshot.Report> entry : m_Reports.entrySet()) {
+            final TrafficSnapshot.Report report = entry.getValue();
+            reports.put(entry.getKey(), report);
+
+            if (previous.Reports.get(entry.getKey()) != report) {
+                final long latency = now - report.Time;
+                maxLatency = Math.max(maxLatency, latency);
+                totalLatency += latency;
+                freshCount++;
+            }
+        }
+
+        final TrafficSnapshot snapshot = new TrafficSnapshot(previous.Tick + 1, now, reports, System.nanoTime() - start,
+                freshCount, maxLatency, freshCount > 0 ? (double) totalLatency / freshCount : 0.0);
+
+        m_Snapshot = snapshot;
+        return snapshot;
+    }
+
+    /**
+     * Last published snapshot, from any thread.
+     */
+    public TrafficSnapshot getSnapshot() {
+        return m_Snapshot;
+    }
+
+    /**
+     * Adds the airplanes of the snapshot not tracked yet and removes those missing from it, then gives every airplane
+     * the attitude and speed of its last report and moves it to its extrapolated position at the time of the snapshot.
+     * Airplanes still on the path the store extrapolates from their previous state leave their slot clean.
+     */
+    public void update(TrafficSnapshot snapshot, Map<String, IAirplane> airplanes, TrafficStore traffic) {
+        airplanes.keySet().removeIf(id -> {
+            if (snapshot.contains(id))
+                return false;
+
+            traffic.remove(id);
+            return true;
+        });
+
+        for (Map.Entry<String, TrafficSnapshot.Report> entry : snapshot.Reports.entrySet()) {
+            final TrafficSnapshot.Report report = entry.getValue();
+
+            IAirplane airplane = airplanes.get(entry.getKey());
+            if (airplane == null) {
+                airplane = new Airplane(entry.getKey());
+                airplanes.put(entry.getKey(), airplane);
+            }
+
+            airplane.setRoll(report.Roll)
+                    .setPitch(report.Pitch)
+                    .setYaw(report.Yaw)
+                    .setSpeed(report.Speed);
+
+            m_Position.set(report.X, report.Y, report.Z);
+            Airplane.extrapolate(m_Position, airplane.getDirection(), report.Speed, snapshot.Time - report.Time, m_Position);
+            airplane.setPosition(m_Position);
+            traffic.put(airplane, snapshot.Time);
+        }
+    }
+
+}
@@ -0,0 +1,430 @@
+package Traffic;
+
+import Entities.Airplane;
+import Entities.IAirplane;
+import Net.TcpConnection;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Pilot reports between the reader threads and the traffic, in stages: the reader threads only copy what they read
+ * into a pre-allocated ring and go back to their sockets, parser threads decode it in batches and hand the reports
+ * over to the handler, and the tick applies the last ones to the traffic (see {@link Extrapolator}).
+ * <p>
+ * Each connection is served by one parser, so that its reports and its closing are handled in order. A report read
+ * while the ring of its parser is full waits aside, in place of any older one of its connection, and is handled once
+ * the parser went past the reports queued before it: a pilot flying straight may not report again for seconds, so the
+ * last report of a connection is never dropped, only those a later one replaced.
+ */
+public class IngestPipeline {
+
+    private static final int SLOT_SIZE = 256;  // bytes copied in place, larger frames get their own buffer
+    private static final int BATCH_SIZE = 256; // slots decoded before the counters are published
+    private static final int SPIN_COUNT = 100; // empty polls before a parser sleeps
+
+    private static final int KIND_LINE  = 0;
+    private static final int KIND_FRAME = 1;
+    private static final int KIND_CLOSE = 2;
+
+    private final Parser[] m_Parsers;
+    private final Handler m_Handler;
+    private volatile boolean m_IsRunning;
+
+    /**
+     * @param capacity slots of the ring of each parser, rounded up to a power of 2
+     */
+    public IngestPipeline(int parsers, int capacity, Handler handler) {
+        final int size = Integer.highestOneBit(Math.max(capacity, 2) * 2 - 1);
+
+        m_Parsers = new Parser[Math.max(parsers, 1)];
+        for (int i = 0; i < m_Parsers.length; i++)
+            m_Parsers[i] = new Parser(i, size);
+
+        m_Handler = handler;
+        m_IsRunning = false;
+    }
+
+    public synchronized void start() {
+        if (m_IsRunning)
+            return;
+
+        m_IsRunning = true;
+        for (Parser parser : m_Parsers) {
+            parser.m_Thread = new Thread(parser, "Ingest Parser " + parser.m_Index);
+            parser.m_Thread.start();
+        }
+    }
+
+    /**
+     * Stops the parsers once they handled what was already read.
+     */
+    public synchronized void stop() {
+        if (!m_IsRunning)
+            return;
+
+        m_IsRunning = false;
+        for (Parser parser : m_Parsers) {
+            LockSupport.unpark(parser.m_Thread);
+
+            try {
+                parser.m_Thread.join();
+            }
+            catch (InterruptedException ie) {
+                // do nothing
+            }
+        }
+    }
+
+    /**
+     * Queues a report in text, received at the time in milliseconds.
+     * @return false if it waits aside, the ring being full
+     */
+    public boolean offer(TcpConnection connection, String line, long time) {
+        return parserOf(connection).offer(KIND_LINE, connection, line, null, time);
+    }
+
+    /**
+     * Queues the payload of an airplane frame, copied, received at the time in milliseconds.
+     * @return false if it waits aside, the ring being full
+     */
+    public boolean offer(TcpConnection connection, ByteBuffer payload, long time) {
+        return parserOf(connection).offer(KIND_FRAME, connection, null, payload, time);
+    }
+
+    /**
+     * Queues the closing of the connection, handled after its reports; never dropped.
+     */
+    public void close(TcpConnection connection) {
+        final Parser parser = parserOf(connection);
+
+        while (!parser.offer(KIND_CLOSE, connection, null, null, 0)) {
+            if (!m_IsRunning)
+                return;
+
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Slots filled and not decoded yet, over all parsers.
+     */
+    public int getDepth() {
+        int depth = 0;
+        for (Parser parser : m_Parsers)
+            depth += parser.getDepth();
+
+        return depth;
+    }
+
+    public int getMaxDepth() {
+        int depth = 0;
+        for (Parser parser : m_Parsers)
+            depth = Math.max(depth, parser.m_MaxDepth);
+
+        return depth;
+    }
+
+    public int getCapacity() {
+        return m_Parsers.length * m_Parsers[0].m_Slots.length;
+    }
+
+    /**
+     * Reports and closings queued since the start, including those not decoded yet.
+     */
+    public long getReceivedCount() {
+        long count = 0;
+        for (Parser parser : m_Parsers)
+            count += parser.m_Head.get() + parser.m_SetAside.get();
+
+        return count;
+    }
+
+    /**
+     * Reports decoded and handed over since the start.
+     */
+    public long getParsedCount() {
+        long count = 0;
+        for (Parser parser : m_Parsers)
+            count += parser.m_Parsed;
+
+        return count;
+    }
+
+    /**
+     * Reports that could not be decoded.
+     */
+    public long getInvalidCount() {
+        long count = 0;
+        for (Parser parser : m_Parsers)
+            count += parser.m_Invalid;
+
+        return count;
+    }
+
+    /**
+     * Reports dropped because a later one of their connection replaced them while the ring of their parser was full.
+     */
+    public long getDroppedCount() {
+        long count = 0;
+        for (Parser parser : m_Parsers)
+            count += parser.m_Dropped.get();
+
+        return count;
+    }
+
+    private Parser parserOf(TcpConnection connection) {
+        return m_Parsers[(System.identityHashCode(connection) & 0x7fffffff) % m_Parsers.length];
+    }
+
+    /**
+     * Receives the decoded reports, on the parser threads.
+     */
+    public interface Handler {
+        void onReport(TcpConnection connection, String id, TrafficSnapshot.Report report);
+        void onClose(TcpConnection connection);
+    }
+
+    private static class Slot {
+
+        // the slot of position p is free to fill when its sequence is p, and filled when it is p + 1
+        private volatile long m_Sequence;
+
+        private int m_Kind;
+        private TcpConnection m_Connection;
+        private String m_Line;
+        private ByteBuffer m_Payload;
+        private long m_Time;
+
+        private Slot(long sequence) {
+            m_Sequence = sequence;
+            m_Payload = ByteBuffer.allocate(SLOT_SIZE);
+        }
+
+        private void fill(int kind, TcpConnection connection, String line, ByteBuffer payload, long time) {
+            m_Kind = kind;
+            m_Connection = connection;
+            m_Line = line;
+            m_Time = time;
+
+            if (payload != null) {
+                if (payload.remaining() > m_Payload.capacity())
+                    m_Payload = ByteBuffer.allocate(payload.remaining());
+
+                m_Payload.clear();
+                m_Payload.put(payload.duplicate()).flip();
+            }
+        }
+
+    }
+
+    /**
+     * Single consumer of a ring filled by any number of reader threads.
+     */
+    private class Parser implements Runnable {
+
+        private final int m_Index;
+        private final Slot[] m_Slots;
+        private final int m_Mask;
+        private final AtomicLong m_Head;    // next position to fill
+        private volatile long m_Tail;       // next position to decode
+        private volatile Thread m_Thread;
+        private volatile boolean m_IsWaiting;
+        private final AtomicLong m_Dropped;
+
+        // the last report of each connection read while the ring was full, with the head of the ring at that time
+        private final ConcurrentHashMap<TcpConnection, Slot> m_Latest;
+        private final AtomicLong m_SetAside;
+
+        // written by the parser thread alone
+        private volatile long m_Parsed;
+        private volatile long m_Invalid;
+        private volatile int m_MaxDepth;
+
+        private Parser(int index, int size) {
+            m_Index = index;
+            m_Slots = new Slot[size];
+            for (int i = 0; i < size; i++)
+                m_Slots[i] = new Slot(i);
+
+            m_Mask = size - 1;
+            m_Head = new AtomicLong();
+            m_Tail = 0;
+            m_IsWaiting = false;
+
+            m_Dropped = new AtomicLong();
+            m_Latest = new ConcurrentHashMap<>();
+            m_SetAside = new AtomicLong();
+            m_Parsed = 0;
+            m_Invalid = 0;
+            m_MaxDepth = 0;
+        }
+
+        private int getDepth() {
+            return (int) (m_Head.get() - m_Tail);
+        }
+
+        private boolean offer(int kind, TcpConnection connection, String line, ByteBuffer payload, long time) {
+            Slot slot;
+            long position;
+
+            while (true) {
+                position = m_Head.get();
+                slot = m_Slots[(int) position & m_Mask];
+
+                final long sequence = slot.m_Sequence;
+                if (sequence < position) {
+                    // still holding the report of the previous turn
+                    if (kind != KIND_CLOSE)
+                        setAside(kind, connection, line, payload, time, position);
+
+                    return false;
+                }
+
+                if (sequence == position && m_Head.compareAndSet(position, position + 1))
+                    break;
+            }
+
+            // this report replaces the one of its connection waiting aside
+            if (kind != KIND_CLOSE && !m_Latest.isEmpty() && m_Latest.remove(connection) != null)
+                m_Dropped.incrementAndGet();
+
+            slot.fill(kind, connection, line, payload, time);
+            slot.m_Sequence = position + 1;
+
+            if (m_IsWaiting)
+                LockSupport.unpark(m_Thread);
+
+            return true;
+        }
+
+        /**
+         * Called by the one reader thread of the connection, so that its reports set aside come in order. A report
+         * replacing another keeps its position, none of its connection having been queued since.
+         */
+        private void setAside(int kind, TcpConnection connection, String line, ByteBuffer payload, long time, long position) {
+            final Slot previous = m_Latest.get(connection);
+            final Slot slot = new Slot(previous != null ? previous.m_Sequence : position);
+            slot.fill(kind, connection, line, payload, time);
+
+            m_SetAside.incrementAndGet();
+            if (m_Latest.put(connection, slot) != null)
+                m_Dropped.incrementAndGet();
+        }
+
+        @Override
+        public void run() {
+            long tail = m_Tail;
+            int idle = 0;
+
+            while (true) {
+                final long head = m_Head.get();
+                final int depth = (int) (head - tail);
+                if (depth > m_MaxDepth)
+                    m_MaxDepth = depth;
+
+                int count = 0;
+                long parsed = 0;
+                long invalid = 0;
+
+                while (count < BATCH_SIZE) {
+                    final Slot slot = m_Slots[(int) tail & m_Mask];
+                    if (slot.m_Sequence != tail + 1)
+                        break;
+
+                    final Slot latest = m_Latest.isEmpty() ? null : m_Latest.get(slot.m_Connection);
+
+                    if (slot.m_Kind == KIND_CLOSE) {
+                        if (latest != null && m_Latest.remove(slot.m_Connection, latest)) {
+                            if (decode(latest))
+                                parsed++;
+                            else
+                                invalid++;
+                        }
+
+                        m_Handler.onClose(slot.m_Connection);
+                    }
+                    else if (latest != null)
+                        m_Dropped.incrementAndGet(); // older than the one waiting aside
+                    else if (decode(slot))
+                        parsed++;
+                    else
+                        invalid++;
+
+                    slot.m_Connection = null;
+                    slot.m_Line = null;
+                    slot.m_Sequence = tail + m_Slots.length;
+
+                    tail++;
+                    count++;
+                }
+
+                // the reports waiting aside once every report queued before them was handled
+                if (!m_Latest.isEmpty()) {
+                    for (Slot latest : m_Latest.values()) {
+                        if (latest.m_Sequence > tail || !m_Latest.remove(latest.m_Connection, latest))
+                            continue;
+
+                        if (decode(latest))
+                            parsed++;
+                        else
+                            invalid++;
+
+                        count++;
+                    }
+                }
+
+                if (count > 0) {
+                    m_Tail = tail;
+                    m_Parsed += parsed;
+                    m_Invalid += invalid;
+                    idle = 0;
+                    continue;
+                }
+
+                if (!m_IsRunning)
+                    break;
+
+                if (++idle < SPIN_COUNT) {
+                    Thread.yield();
+                    continue;
+                }
+
+                // sleeps until a reader fills a slot
+                m_IsWaiting = true;
+                if (m_Head.get() == tail && m_IsRunning)
+                    LockSupport.park(this);
+
+                m_IsWaiting = false;
+            }
+        }
+
+        private boolean decode(Slot slot) {
+            try {
+                if (slot.m_Kind == KIND_LINE) {
+                    final IAirplane airplane = Airplane.fromString(slot.m_Line);
+                    if (airplane == null)
+                        return false;
+
+                    m_Handler.onReport(slot.m_Connection, airplane.getId(), TrafficSnapshot.Report.of(airplane, slot.m_Time));
+                }
+                else {
+                    final ByteBuffer payload = slot.m_Payload;
+                    final String id = Airplane.readId(payload);
+
+                    m_Handler.onReport(slot.m_Connection, id, TrafficSnapshot.Report.read(payload, slot.m_Time));
+                }
+
+                return true;
+            }
+            catch (RuntimeException e) {
+                // truncated frame
+                return false;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,81 @@
+package Traffic;
+
+import Entities.IAirplane;
+import Entities.Region;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Coarse grid of the traffic slots over the map, to find the airplanes of a region without going through all of them.
+ * Airplanes off the map are kept in the border cells. Rebuilding the grid does not allocate once it is large enough
+ * for the traffic.
+ */
+public class RegionIndex {
+
+    private static final int NONE = -1;
+    private static final float CELL_SIZE = 10.0f; // km
+
+    private final int m_Columns;
+    private final int m_Rows;
+    private final int[] m_Heads;
+    private int[] m_Next;
+
+    private TrafficStore m_Traffic;
+
+    /**
+     * @param width size of the map, in kilometers
+     * @param height size of the map, in kilometers
+     */
+    public RegionIndex(float width, float height) {
+        m_Columns = Math.max(1, (int) Math.ceil(width / CELL_SIZE));
+        m_Rows = Math.max(1, (int) Math.ceil(height / CELL_SIZE));
+        m_Heads = new int[m_Columns * m_Rows];
+        m_Next = new int[0];
+    }
+
+    public void build(TrafficStore traffic) {
+        final int slotCount = traffic.getSlotCount();
+        if (m_Next.length < slotCount)
+            m_Next = new int[Math.max(slotCount, m_Next.length * 2)];
+
+        m_Traffic = traffic;
+        Arrays.fill(m_Heads, NONE);
+
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (!traffic.isUsed(slot))
+                continue;
+
+            final int cell = row(traffic.PosY[slot]) * m_Columns + column(traffic.PosX[slot]);
+            m_Next[slot] = m_Heads[cell];
+            m_Heads[cell] = slot;
+        }
+    }
+
+    /**
+     * Adds the airplanes inside the region to the list, in no particular order.
+     */
+    public void collect(Region region, List<IAirplane> airplanes) {
+        final int minColumn = column(region.MinX);
+        final int maxColumn = column(region.MaxX);
+        final int maxRow = row(region.MaxY);
+
+        for (int row = row(region.MinY); row <= maxRow; row++) {
+            for (int column = minColumn; column <= maxColumn; column++) {
+                for (int slot = m_Heads[row * m_Columns + column]; slot != NONE; slot = m_Next[slot]) {
+                    if (region.contains(m_Traffic.PosX[slot], m_Traffic.PosY[slot], m_Traffic.PosZ[slot]))
+                        airplanes.add(m_Traffic.getAirplane(slot));
+                }
+            }
+        }
+    }
+
+    private int column(float x) {
+        return Math.min(Math.max((int) Math.floor(x / CELL_SIZE), 0), m_Columns - 1);
+    }
+
+    private int row(float y) {
+        return Math.min(Math.max((int) Math.floor(y / CELL_SIZE), 0), m_Rows - 1);
+    }
+
+}
@@ -0,0 +1,125 @@
+package Traffic;
+
+import Entities.IAirplane;
+import Entities.Region;
+import Entities.TrafficUpdate;
+import Net.Message;
+import Net.Protocol;
+import Net.SharedBuffer;
+import Net.TcpConnection;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Traffic updates of the consoles subscribed to the same region, or to the whole traffic: the airplanes inside it and
+ * their deltas, with their own sequence numbers. Updates are encoded at most once per protocol, whatever the number
+ * of consoles.
+ */
+public class TrafficFeed {
+
+    private final Region m_Region; // null for the whole traffic
+    private final DeltaTracker m_Deltas;
+    private final List<IAirplane> m_Inside;
+    private Collection<? extends IAirplane> m_Airplanes;
+    private boolean m_HasChanges;
+
+    // encoded updates of the current broadcast, indexed by protocol
+    private final SharedBuffer[] m_Snapshots;
+    private final SharedBuffer[] m_Updates;
+
+    public TrafficFeed(Region region) {
+        m_Region = region;
+        m_Deltas = new DeltaTracker();
+        m_Inside = new ArrayList<>();
+        m_Airplanes = m_Inside;
+        m_HasChanges = false;
+
+        m_Snapshots = new SharedBuffer[2];
+        m_Updates = new SharedBuffer[2];
+    }
+
+    public Region getRegion() {
+        return m_Region;
+    }
+
+    /**
+     * Takes the airplanes inside the region from the index, which must be built, and their changes since the last update.
+     * @return whether anything changed
+     */
+    public boolean update(Collection<? extends IAirplane> airplanes, RegionIndex index) {
+        if (m_Region == null) {
+            m_Airplanes = airplanes;
+        }
+        else {
+            m_Inside.clear();
+            index.collect(m_Region, m_Inside);
+            m_Airplanes = m_Inside;
+        }
+
+        m_HasChanges = m_Deltas.update(m_Airplanes);
+        return m_HasChanges;
+    }
+
+    public boolean hasChanges() {
+        return m_HasChanges;
+    }
+
+    /**
+     * Whether the airplane was inside the region at the last update.
+     */
+    public boolean contains(String id) {
+        return m_Deltas.contains(id);
+    }
+
+    public SharedBuffer getSnapshot(int protocol, SharedBuffer.Pool pool) {
+        if (m_Snapshots[protocol] == null) {
+            final long sequence = m_Deltas.getSequence();
+
+            if (protocol == Protocol.BINARY) {
+                m_Snapshots[protocol] = TrafficUpdate.toSnapshotFrame(sequence, m_Airplanes, pool);
+            }
+            else {
+                final Message message = TrafficUpdate.toSnapshotMessage(sequence, m_Airplanes);
+                m_Snapshots[protocol] = TcpConnection.encodeLine(message.toString(), pool);
+            }
+        }
+
+        return m_Snapshots[protocol];
+    }
+
+    public SharedBuffer getDelta(int protocol, SharedBuffer.Pool pool) {
+        if (m_Updates[protocol] == null) {
+            final long sequence = m_Deltas.getSequence();
+
+            if (protocol == Protocol.BINARY) {
+                m_Updates[protocol] = TrafficUpdate.toDeltaFrame(sequence, m_Deltas.getRemoved(), m_Deltas.getChanged(), pool);
+            }
+            else {
+                final Message message = TrafficUpdate.toDeltaMessage(sequence, m_Deltas.getRemoved(), m_Deltas.getChanged());
+                m_Updates[protocol] = TcpConnection.encodeLine(message.toString(), pool);
+            }
+        }
+
+        return m_Updates[protocol];
+    }
+
+    /**
+     * Releases the encoded updates once sent, the connections holding their own references until written.
+     */
+    public void release() {
+        for (int protocol = 0; protocol < 2; protocol++) {
+            if (m_Snapshots[protocol] != null) {
+                m_Snapshots[protocol].release();
+                m_Snapshots[protocol] = null;
+            }
+
+            if (m_Updates[protocol] != null) {
+                m_Updates[protocol].release();
+                m_Updates[protocol] = null;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,109 @@
+package Traffic;
+
+import Entities.IAirplane;
+import FMath.Vector3;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Last reports of the pilots as taken at the start of a tick. The tick extrapolates, detects collisions and broadcasts
+ * from this one picture of the airspace while the reader threads keep reporting for the next one; never changed once
+ * published, so it is read from any thread without locks.
+ */
+public final class TrafficSnapshot {
+
+    public final long Tick;
+    public final long Time;              // ms, when taken
+    public final Map<String, Report> Reports;
+
+    // cost of taking it, and delay of the reports it published first
+    public final long CopyTime;          // ns
+    public final int FreshCount;         // reports received since the previous snapshot
+    public final long MaxLatency;        // ms, from the receipt of a fresh report to its publication
+    public final double MeanLatency;     // ms
+
+    TrafficSnapshot(long tick, long time, HashMap<String, Report> reports,
+                    long copyTime, int freshCount, long maxLatency, double meanLatency) {
+        Tick = tick;
+        Time = time;
+        Reports = Collections.unmodifiableMap(reports);
+        CopyTime = copyTime;
+        FreshCount = freshCount;
+        MaxLatency = maxLatency;
+        MeanLatency = meanLatency;
+    }
+
+    static TrafficSnapshot empty() {
+        return new TrafficSnapshot(0, 0, new HashMap<>(), 0, 0, 0, 0.0);
+    }
+
+    public boolean contains(String id) {
+        return Reports.containsKey(id);
+    }
+
+    public int size() {
+        return Reports.size();
+    }
+
+    /**
+     * State of an airplane in a report, never changed; a new report replaces it.
+     */
+    public static final class Report {
+
+        public final float X;
+        public final float Y;
+        public final float Z;
+        public final float Roll;
+        public final float Pitch;
+        public final float Yaw;
+        public final float Speed;
+        public final long Time; // ms, when received
+
+        public Report(float x, float y, float z, float roll, float pitch, float yaw, float speed, long time) {
+            X = x;
+            Y = y;
+            Z = z;
+            Roll = roll;
+            Pitch = pitch;
+            Yaw = yaw;
+            Speed = speed;
+            Time = time;
+        }
+
+        public static Report of(IAirplane airplane, long time) {
+            final Vector3 position = airplane.getPosition();
+
+            return new Report(
+                    position.X,
+                    position.Y,
+                    position.Z,
+                    airplane.getRoll(),
+                    airplane.getPitch(),
+                    airplane.getYaw(),
+                    airplane.getSpeed(),
+                    time
+            );
+        }
+
+        /**
+         * Reads the state following the id in the payload of an airplane frame, without decoding it into an airplane.
+         */
+        public static Report read(ByteBuffer payload, long time) {
+            return new Report(
+                    payload.getFloat(),
+                    payload.getFloat(),
+                    payload.getFloat(),
+                    payload.getFloat(),
+                    payload.getFloat(),
+                    payload.getFloat(),
+                    payload.getFloat(),
+                    time
+            );
+        }
+
+    }
+
+}
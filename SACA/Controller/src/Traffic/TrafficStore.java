@@ -0,0 +1,321 @@
+package Traffic;
+
+import Entities.Airplane;
+import Entities.IAirplane;
+import FMath.Vector3;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Dense primitive copy of the airplane states, one slot per airplane.
+ * Slots are stable while an airplane is tracked and are reused after it leaves.
+ * A slot is marked dirty whenever its state changes beyond the configured tolerances; for airplanes put with the time
+ * of their position, whenever they leave the straight path extrapolated from their state when last marked dirty.
+ */
+public class TrafficStore {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private static final float DEFAULT_POSITION_TOLERANCE = 0.001f; // km
+    private static final float DEFAULT_ANGLE_TOLERANCE    = 0.01f;  // degrees
+    private static final float DEFAULT_SPEED_TOLERANCE    = 0.1f;   // km/h
+
+    public float[] PosX;
+    public float[] PosY;
+    public float[] PosZ;
+    public float[] DirX;
+    public float[] DirY;
+    public float[] DirZ;
+    public float[] Pitch;
+    public float[] Yaw;
+    public float[] Speed;
+    public int[] Flags;
+
+    // position when last marked dirty by put(airplane, time), extrapolated from with the current direction and speed
+    private float[] m_RefX;
+    private float[] m_RefY;
+    private float[] m_RefZ;
+    private long[] m_RefTimes;
+    private final Vector3 m_Expected;
+    private final Vector3 m_Direction;
+
+    private IAirplane[] m_Airplanes;
+    private int[] m_Generations;
+    private boolean[] m_Dirty;
+    private int m_DirtyCount;
+    private final HashMap<String, Integer> m_Slots;
+    private int[] m_FreeSlots;
+    private int m_FreeCount;
+    private int m_SlotCount;
+
+    private float m_PositionTolerance;
+    private float m_AngleTolerance;
+    private float m_SpeedTolerance;
+
+    public TrafficStore() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public TrafficStore(int capacity) {
+        PosX = new float[capacity];
+        PosY = new float[capacity];
+        PosZ = new float[capacity];
+        DirX = new float[capacity];
+        DirY = new float[capacity];
+        DirZ = new float[capacity];
+        Pitch = new float[capacity];
+        Yaw = new float[capacity];
+        Speed = new float[capacity];
+        Flags = new int[capacity];
+
+        m_RefX = new float[capacity];
+        m_RefY = new float[capacity];
+        m_RefZ = new float[capacity];
+        m_RefTimes = new long[capacity];
+        m_Expected = new Vector3();
+        m_Direction = new Vector3();
+
+        m_Airplanes = new IAirplane[capacity];
+        m_Generations = new int[capacity];
+        m_Dirty = new boolean[capacity];
+        m_DirtyCount = 0;
+        m_Slots = new HashMap<>(capacity);
+        m_FreeSlots = new int[capacity];
+        m_FreeCount = 0;
+        m_SlotCount = 0;
+
+        setTolerances(DEFAULT_POSITION_TOLERANCE, DEFAULT_ANGLE_TOLERANCE, DEFAULT_SPEED_TOLERANCE);
+    }
+
+    /**
+     * Changes smaller than these tolerances are ignored: the slot keeps its previous state and stays clean.
+     */
+    public void setTolerances(float position, float angle, float speed) {
+        m_PositionTolerance = position;
+        m_AngleTolerance = angle;
+        m_SpeedTolerance = speed;
+    }
+
+    /**
+     * Adds the airplane if it is not tracked yet, then copies its current state into its slot
+     * if it moved, turned or changed speed beyond the tolerances.
+     */
+    public int put(IAirplane airplane) {
+        Integer slot = m_Slots.get(airplane.getId());
+
+        final Vector3 position = airplane.getPosition();
+
+        if (slot == null) {
+            slot = allocateSlot();
+            m_Slots.put(airplane.getId(), slot);
+            m_Airplanes[slot] = airplane;
+        }
+        else if (!hasChanged(airplane, position, m_Expected.set(PosX[slot], PosY[slot], PosZ[slot]),
+                             Yaw[slot], Pitch[slot], Speed[slot])) {
+            Flags[slot] = airplane.getCdState() | airplane.getDispState();
+            return slot;
+        }
+
+        copy(slot, airplane, position);
+        markDirty(slot);
+        return slot;
+    }
+
+    /**
+     * Adds the airplane if it is not tracked yet, then copies its current position into its slot. The slot is only
+     * marked dirty, with the rest of the state copied, if the airplane turned, changed speed or left the straight
+     * path extrapolated from its state when last marked dirty, beyond the tolerances: airplanes flying as predicted
+     * move in the store and stay clean.
+     *
+     * @param time ms, when the airplane was at its current position
+     */
+    public int put(IAirplane airplane, long time) {
+        Integer slot = m_Slots.get(airplane.getId());
+
+        final Vector3 position = airplane.getPosition();
+
+        if (slot == null) {
+            slot = allocateSlot();
+            m_Slots.put(airplane.getId(), slot);
+            m_Airplanes[slot] = airplane;
+        }
+        else {
+            m_Expected.set(m_RefX[slot], m_RefY[slot], m_RefZ[slot]);
+            m_Direction.set(DirX[slot], DirY[slot], DirZ[slot]);
+            Airplane.extrapolate(m_Expected, m_Direction, Speed[slot], time - m_RefTimes[slot], m_Expected);
+
+            if (!hasChanged(airplane, position, m_Expected, Yaw[slot], Pitch[slot], Speed[slot])) {
+                PosX[slot] = position.X;
+                PosY[slot] = position.Y;
+                PosZ[slot] = position.Z;
+                Flags[slot] = airplane.getCdState() | airplane.getDispState();
+                return slot;
+            }
+        }
+
+        copy(slot, airplane, position);
+        m_RefX[slot] = position.X;
+        m_RefY[slot] = position.Y;
+        m_RefZ[slot] = position.Z;
+        m_RefTimes[slot] = time;
+
+        markDirty(slot);
+        return slot;
+    }
+
+    private void copy(int slot, IAirplane airplane, Vector3 position) {
+        final Vector3 direction = airplane.getDirection();
+
+        PosX[slot] = position.X;
+        PosY[slot] = position.Y;
+        PosZ[slot] = position.Z;
+        DirX[slot] = direction.X;
+        DirY[slot] = direction.Y;
+        DirZ[slot] = direction.Z;
+        Pitch[slot] = airplane.getPitch();
+        Yaw[slot] = airplane.getYaw();
+        Speed[slot] = airplane.getSpeed();
+        Flags[slot] = airplane.getCdState() | airplane.getDispState();
+    }
+
+    public void remove(String id) {
+        final Integer slot = m_Slots.remove(id);
+        if (slot == null)
+            return;
+
+        m_Airplanes[slot] = null;
+        m_Generations[slot]++;
+        Flags[slot] = 0;
+        m_FreeSlots[m_FreeCount++] = slot;
+
+        // consumers drop whatever they cached for the slot
+        markDirty(slot);
+    }
+
+    public boolean isDirty(int slot) {
+        return m_Dirty[slot];
+    }
+
+    public int getDirtyCount() {
+        return m_DirtyCount;
+    }
+
+    public void markAllDirty() {
+        Arrays.fill(m_Dirty, 0, m_SlotCount, true);
+        m_DirtyCount = m_SlotCount;
+    }
+
+    public void clearDirty() {
+        Arrays.fill(m_Dirty, 0, m_SlotCount, false);
+        m_DirtyCount = 0;
+    }
+
+    public int getSlot(String id) {
+        final Integer slot = m_Slots.get(id);
+        return slot != null ? slot : -1;
+    }
+
+    /**
+     * Upper bound (exclusive) of the slots in use; check {@link #isUsed(int)} for holes.
+     */
+    public int getSlotCount() {
+        return m_SlotCount;
+    }
+
+    public int size() {
+        return m_Slots.size();
+    }
+
+    public boolean isUsed(int slot) {
+        return m_Airplanes[slot] != null;
+    }
+
+    /**
+     * Number of airplanes that left the slot, to tell a reused slot from the airplane it held before.
+     */
+    public int getGeneration(int slot) {
+        return m_Generations[slot];
+    }
+
+    public IAirplane getAirplane(int slot) {
+        return m_Airplanes[slot];
+    }
+
+    public int getCdState(int slot) {
+        return Flags[slot] & Airplane.CD_MASK;
+    }
+
+    public void setCdState(int slot, int state) {
+        Flags[slot] = (Flags[slot] & ~Airplane.CD_MASK) | (state & Airplane.CD_MASK);
+        m_Airplanes[slot].setCdState(state);
+    }
+
+    public void setDispState(int slot, int state) {
+        Flags[slot] = (Flags[slot] & ~Airplane.DISP_MASK) | (state & Airplane.DISP_MASK);
+        m_Airplanes[slot].setDispState(state);
+    }
+
+    private boolean hasChanged(IAirplane airplane, Vector3 position, Vector3 expected,
+                               float yaw, float pitch, float speed) {
+        final float dx = position.X - expected.X;
+        final float dy = position.Y - expected.Y;
+        final float dz = position.Z - expected.Z;
+
+        return dx * dx + dy * dy + dz * dz > m_PositionTolerance * m_PositionTolerance ||
+               angleDistance(airplane.getYaw(), yaw) > m_AngleTolerance ||
+               angleDistance(airplane.getPitch(), pitch) > m_AngleTolerance ||
+               Math.abs(airplane.getSpeed() - speed) > m_SpeedTolerance;
+    }
+
+    private void markDirty(int slot) {
+        if (!m_Dirty[slot]) {
+            m_Dirty[slot] = true;
+            m_DirtyCount++;
+        }
+    }
+
+    static float angleDistance(float a1, float a2) {
+        float distance = Math.abs(a1 - a2);
+
+        // float remainders are a call into the runtime, and angles are mostly within a turn already
+        if (distance >= 360.0f)
+            distance %= 360.0f;
+
+        return Math.min(distance, 360.0f - distance);
+    }
+
+    private int allocateSlot() {
+        if (m_FreeCount > 0)
+            return m_FreeSlots[--m_FreeCount];
+
+        if (m_SlotCount == m_Airplanes.length)
+            grow(Math.max(INITIAL_CAPACITY, m_Airplanes.length * 2));
+
+        return m_SlotCount++;
+    }
+
+    private void grow(int capacity) {
+        PosX = Arrays.copyOf(PosX, capacity);
+        PosY = Arrays.copyOf(PosY, capacity);
+        PosZ = Arrays.copyOf(PosZ, capacity);
+        DirX = Arrays.copyOf(DirX, capacity);
+        DirY = Arrays.copyOf(DirY, capacity);
+        DirZ = Arrays.copyOf(DirZ, capacity);
+        Pitch = Arrays.copyOf(Pitch, capacity);
+        Yaw = Arrays.copyOf(Yaw, capacity);
+        Speed = Arrays.copyOf(Speed, capacity);
+        Flags = Arrays.copyOf(Flags, capacity);
+
+        m_RefX = Arrays.copyOf(m_RefX, capacity);
+        m_RefY = Arrays.copyOf(m_RefY, capacity);
+        m_RefZ = Arrays.copyOf(m_RefZ, capacity);
+        m_RefTimes = Arrays.copyOf(m_RefTimes, capacity);
+
+        m_Airplanes = Arrays.copyOf(m_Airplanes, capacity);
+        m_Generations = Arrays.copyOf(m_Generations, capacity);
+        m_Dirty = Arrays.copyOf(m_Dirty, capacity);
+        m_FreeSlots = Arrays.copyOf(m_FreeSlots, capacity);
+    }
+
+}
@@ -1,4 +1,5 @@
 import Entities.Airplane;
+import Entities.AirplaneRenderer;
 import FMath.FMath;
 import FMath.Vector3;
 import Net.TcpConnection;
@@ -209,7 +210,7 @@ public class Pilot extends Application implements EventHandler<KeyEvent>, TcpCon
 
             m_Gfx.clearRect(0, 0, m_Viewport.Width, m_Viewport.Height);
 
-            Airplane.draw(m_Gfx, m_Airplane);
+            AirplaneRenderer.draw(m_Gfx, m_Airplane);
 
             float halfW = m_AltmViewport.Width / 2;
             float halfH = m_AltmViewport.Height / 2;
@@ -0,0 +1,149 @@
+package Collision;
+
+import Entities.Airplane;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import static Collision.CollisionDetection.*;
+
+/**
+ * The lanes of a {@link BatchKernel} evaluated with the Vector API, as many pairs at a time as the preferred vector
+ * holds floats. Same operations in the same order as the scalar loop, so the states are the same bit for bit.
+ * <p>
+ * Compiled apart, for Java 17 and later with {@code --add-modules jdk.incubator.vector}; the batch kernel only loads it
+ * when the runtime resolves the module.
+ */
+final class VectorLanes implements BatchKernel.Lanes {
+
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS = FLOATS.withLanes(int.class);
+
+    // largest float within the same flight level, which the scalar loop compares as a double
+    private static final float SAME_LEVEL_DISTANCE = sameLevelDistance();
+
+    @Override
+    public void evaluate(BatchKernel batch, int lanes, float horizon) {
+        for (int i = 0; i < lanes; i += FLOATS.length()) {
+            final FloatVector x1 = FloatVector.fromArray(FLOATS, batch.X1, i);
+            final FloatVector y1 = FloatVector.fromArray(FLOATS, batch.Y1, i);
+            final FloatVector z1 = FloatVector.fromArray(FLOATS, batch.Z1, i);
+            final FloatVector x2 = FloatVector.fromArray(FLOATS, batch.X2, i);
+            final FloatVector y2 = FloatVector.fromArray(FLOATS, batch.Y2, i);
+            final FloatVector z2 = FloatVector.fromArray(FLOATS, batch.Z2, i);
+            final FloatVector d1x = FloatVector.fromArray(FLOATS, batch.D1X, i);
+            final FloatVector d1y = FloatVector.fromArray(FLOATS, batch.D1Y, i);
+            final FloatVector d1z = FloatVector.fromArray(FLOATS, batch.D1Z, i);
+            final FloatVector d2x = FloatVector.fromArray(FLOATS, batch.D2X, i);
+            final FloatVector d2y = FloatVector.fromArray(FLOATS, batch.D2Y, i);
+            final FloatVector d2z = FloatVector.fromArray(FLOATS, batch.D2Z, i);
+
+            final FloatVector dx = x1.sub(x2);
+            final FloatVector dy = y1.sub(y2);
+
+            final FloatVector posXyDistance = dx.mul(dx).add(dy.mul(dy)).sqrt();
+            final FloatVector posZDistance = z1.sub(z2).abs();
+
+            final VectorMask<Float> warn = posXyDistance.compare(VectorOperators.LE, HORIZONTAL_DISTURBANCE_DISTANCE)
+                    .and(posZDistance.compare(VectorOperators.LE, VERTICAL_DISTURBANCE_DISTANCE));
+            final VectorMask<Float> sameLevel = posZDistance.compare(VectorOperators.LE, SAME_LEVEL_DISTANCE);
+
+            final FloatVector speed1 = FloatVector.fromArray(FLOATS, batch.S1, i).max(0.1f);
+            final FloatVector speed2 = FloatVector.fromArray(FLOATS, batch.S2, i).max(0.1f);
+            final FloatVector reach1 = speed1.mul(horizon).div(3600);
+            final FloatVector reach2 = speed2.mul(horizon).div(3600);
+
+            // trajectory segment bounds
+            final FloatVector ex1 = x1.add(d1x.mul(reach1)), ey1 = y1.add(d1y.mul(reach1)), ez1 = z1.add(d1z.mul(reach1));
+            final FloatVector ex2 = x2.add(d2x.mul(reach2)), ey2 = y2.add(d2y.mul(reach2)), ez2 = z2.add(d2z.mul(reach2));
+
+            final FloatVector gapX = gap(x1, ex1, x2, ex2);
+            final FloatVector gapY = gap(y1, ey1, y2, ey2);
+            final FloatVector gapZ = gap(z1, ez1, z2, ez2);
+
+            final VectorMask<Float> reachableIfWarn = gapX.compare(VectorOperators.LE, HORIZONTAL_PANIC_DISTANCE)
+                    .and(gapY.compare(VectorOperators.LE, HORIZONTAL_PANIC_DISTANCE))
+                    .and(gapZ.compare(VectorOperators.LE, VERTICAL_PANIC_DISTANCE));
+            final VectorMask<Float> reachableIfLevel = gapX.compare(VectorOperators.LT, HORIZONTAL_DISTURBANCE_DISTANCE)
+                    .and(gapY.compare(VectorOperators.LT, HORIZONTAL_DISTURBANCE_DISTANCE));
+            final VectorMask<Float> reachableIfNot = gapZ.compare(VectorOperators.LT, VERTICAL_DISTURBANCE_DISTANCE);
+
+            final VectorMask<Float> reachable = warn.and(reachableIfWarn)
+                    .or(warn.not().and(sameLevel.and(reachableIfLevel).or(sameLevel.not().and(reachableIfNot))));
+
+            // nearest points between both rays
+            final FloatVector wx = x2.sub(x1);
+            final FloatVector wy = y2.sub(y1);
+            final FloatVector wz = z2.sub(z1);
+
+            final FloatVector p = dot(d1x, d1y, d1z, d2x, d2y, d2z);
+            final FloatVector q = dot(d1x, d1y, d1z, wx, wy, wz);
+            final FloatVector r = dot(d2x, d2y, d2z, wx, wy, wz);
+            final FloatVector s = dot(d1x, d1y, d1z, d1x, d1y, d1z);
+            final FloatVector t = dot(d2x, d2y, d2z, d2x, d2y, d2z);
+
+            final FloatVector denominator = s.mul(t).sub(p.mul(p));
+            final FloatVector fact1 = p.neg().mul(r).add(q.mul(t)).div(denominator);
+            final FloatVector fact2 = p.mul(q).sub(r.mul(s)).div(denominator);
+
+            final FloatVector c1x = x1.add(d1x.mul(fact1)), c1y = y1.add(d1y.mul(fact1)), c1z = z1.add(d1z.mul(fact1));
+            final FloatVector c2x = x2.add(d2x.mul(fact2)), c2y = y2.add(d2y.mul(fact2)), c2z = z2.add(d2z.mul(fact2));
+
+            final FloatVector e1x = c1x.sub(x1), e1y = c1y.sub(y1), e1z = c1z.sub(z1);
+            final FloatVector e2x = c2x.sub(x2), e2y = c2y.sub(y2), e2z = c2z.sub(z2);
+
+            final FloatVector dot1 = dot(e1x, e1y, e1z, d1x, d1y, d1z);
+            final FloatVector dot2 = dot(e2x, e2y, e2z, d2x, d2y, d2z);
+
+            final FloatVector f1 = dot(e1x, e1y, e1z, e1x, e1y, e1z).sqrt().div(speed1);
+            final FloatVector f2 = dot(e2x, e2y, e2z, e2x, e2y, e2z).sqrt().div(speed2);
+
+            final VectorMask<Float> willCross = reachable
+                    .and(s.compare(VectorOperators.NE, 0.0f))
+                    .and(t.compare(VectorOperators.NE, 0.0f))
+                    .and(p.mul(p).compare(VectorOperators.NE, s.mul(t)))
+                    .and(dot1.compare(VectorOperators.GT, 0.0f))
+                    .and(dot2.compare(VectorOperators.GT, 0.0f))
+                    .and(fact1.compare(VectorOperators.LE, reach1))
+                    .and(fact2.compare(VectorOperators.LE, reach2))
+                    .and(f1.sub(f2).abs().mul(3600).compare(VectorOperators.LE, CROSSING_TIME_WINDOW));
+
+            final FloatVector px = c1x.sub(c2x);
+            final FloatVector py = c1y.sub(c2y);
+
+            final FloatVector pathXyDistance = px.mul(px).add(py.mul(py)).sqrt();
+            final FloatVector pathZDistance = c1z.sub(c2z).abs();
+
+            final VectorMask<Float> panic = warn.and(willCross)
+                    .and(pathXyDistance.compare(VectorOperators.LE, HORIZONTAL_PANIC_DISTANCE))
+                    .and(pathZDistance.compare(VectorOperators.LE, VERTICAL_PANIC_DISTANCE));
+            final VectorMask<Float> predicted = warn.not().and(willCross).and(
+                    sameLevel.and(pathXyDistance.compare(VectorOperators.LT, HORIZONTAL_DISTURBANCE_DISTANCE))
+                            .or(sameLevel.not().and(pathZDistance.compare(VectorOperators.LT, VERTICAL_DISTURBANCE_DISTANCE))));
+
+            IntVector.zero(INTS)
+                    .blend(Airplane.FLAG_CD_WARN, warn.or(predicted).cast(INTS))
+                    .blend(Airplane.FLAG_CD_PANIC, panic.cast(INTS))
+                    .intoArray(batch.Flags, i);
+        }
+    }
+
+    /**
+     * Distance between the ranges [a1, b1] and [a2, b2] of both segments on an axis, 0 if they overlap.
+     */
+    private static FloatVector gap(FloatVector a1, FloatVector b1, FloatVector a2, FloatVector b2) {
+        return a2.min(b2).sub(a1.max(b1)).max(a1.min(b1).sub(a2.max(b2))).max(0.0f);
+    }
+
+    private static FloatVector dot(FloatVector ax, FloatVector ay, FloatVector az, FloatVector bx, FloatVector by, FloatVector bz) {
+        return ax.mul(bx).add(ay.mul(by)).add(az.mul(bz));
+    }
+
+    private static float sameLevelDistance() {
+        final float distance = (float) 0.1524;
+        return distance > 0.1524 ? Math.nextDown(distance) : distance;
+    }
+
+}